@@ -0,0 +1,78 @@
+package ca.lwi.trqcbot.benchmarks;
+
+import ca.lwi.trqcbot.ranks.ChatActivityCounters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de l'enregistrement d'un message dans les compteurs d'activité de chat,
+ * comparé à une map d'Integer indexée par String.
+ * À lancer avec -prof gc : gc.alloc.rate.norm doit être à 0 B/op pour les compteurs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatActivityBenchmark {
+
+    private static final long FIRST_SNOWFLAKE = 300_000_000_000_000_000L;
+
+    // Nombre d'utilisateurs actifs pendant un intervalle d'écriture
+    @Param({"100", "10000"})
+    private int userCount;
+
+    private ChatActivityCounters counters;
+    private Map<String, Integer> boxedCounters;
+    private long[] userIds;
+    private String[] userIdStrings;
+    private long dayStart;
+
+    @Setup
+    public void setup() {
+        counters = new ChatActivityCounters(Integer.MAX_VALUE, () -> {});
+        boxedCounters = new ConcurrentHashMap<>();
+        userIds = new long[userCount];
+        userIdStrings = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            userIds[i] = FIRST_SNOWFLAKE + i * 4_194_304L;
+            userIdStrings[i] = Long.toString(userIds[i]);
+        }
+        long now = System.currentTimeMillis();
+        dayStart = now - (now % (1000L * 60 * 60 * 24));
+        // Toutes les entrées existent déjà : on mesure le chemin d'un message, pas la croissance de la table
+        for (long userId : userIds) counters.record(userId, dayStart, now, false, false);
+        for (String userId : userIdStrings) boxedCounters.put(userId, 1);
+    }
+
+    // Index d'utilisateur propre à chaque thread, pour ne pas partager de compteur entre threads
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        private int next(int bound) {
+            index = index + 1 == bound ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public void stripedCounters(Cursor cursor) {
+        counters.record(userIds[cursor.next(userCount)], dayStart, dayStart, false, true);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void stripedCountersContended(Cursor cursor) {
+        counters.record(userIds[cursor.next(userCount)], dayStart, dayStart, false, true);
+    }
+
+    @Benchmark
+    public void boxedMap(Cursor cursor) {
+        boxedCounters.merge(userIdStrings[cursor.next(userCount)], 1, Integer::sum);
+    }
+}
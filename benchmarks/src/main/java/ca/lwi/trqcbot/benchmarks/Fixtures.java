@@ -0,0 +1,127 @@
+package ca.lwi.trqcbot.benchmarks;
+
+import ca.lwi.trqcbot.utils.FontUtils;
+import org.bson.Document;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Données synthétiques pour les benchmarks : utilisateurs, équipes et logos locaux.
+ * Aucun accès à MongoDB, Discord ou au réseau.
+ */
+public final class Fixtures {
+
+    private static final long DAY_MS = 1000L * 60 * 60 * 24;
+    private static final String[] RANKS = {"Recrue", "Joueur", "Vétéran"};
+
+    private static boolean fontsLoaded;
+
+    private Fixtures() {}
+
+    /**
+     * Charge les polices utilisées par les générateurs d'images (emoji).
+     */
+    public static synchronized void loadFonts() {
+        if (fontsLoaded) return;
+        System.setProperty("java.awt.headless", "true");
+        FontUtils.loadFonts();
+        fontsLoaded = true;
+    }
+
+    /**
+     * @param count Nombre d'utilisateurs
+     * @param seed Graine du générateur aléatoire
+     * @return Des documents users avec un sous-document reputation réaliste
+     */
+    public static List<Document> users(int count, long seed) {
+        return users(0, count, seed);
+    }
+
+    /**
+     * Génère une tranche d'utilisateurs, pour insérer un grand nombre d'utilisateurs par lots sans tous les garder en mémoire.
+     * @param from Index du premier utilisateur (userId, nom et équipe en dépendent)
+     * @param count Nombre d'utilisateurs
+     * @param seed Graine du générateur aléatoire
+     * @return Les utilisateurs d'index from à from + count - 1
+     */
+    public static List<Document> users(int from, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed + from);
+        long now = System.currentTimeMillis();
+        List<Document> users = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            int messages = random.nextInt(0, 2_000);
+            int activeDays = random.nextInt(1, 200);
+            Document reputation = new Document("messagesCount", messages)
+                    .append("tagsCount", random.nextInt(0, messages / 4 + 1))
+                    .append("responsesCount", random.nextInt(0, messages / 3 + 1))
+                    .append("dailyMessagesCount", random.nextInt(0, 120))
+                    .append("avgDailyMessages", random.nextInt(0, 80))
+                    .append("activeDaysCount", activeDays)
+                    .append("lastMessageDay", now - (now % DAY_MS) - random.nextInt(0, 10) * DAY_MS)
+                    .append("totalVoiceMinutes", random.nextInt(0, 20_000))
+                    .append("dailyVoiceMinutes", random.nextInt(0, 300))
+                    .append("voiceDaysActive", random.nextInt(0, activeDays + 1))
+                    .append("lastActive", now - random.nextLong(0, 30 * DAY_MS))
+                    .append("joinDate", now - random.nextLong(30 * DAY_MS, 400 * DAY_MS));
+            users.add(new Document("userId", String.valueOf(100_000_000_000_000_000L + i))
+                    .append("username", "Joueur" + i)
+                    .append("currentRank", RANKS[random.nextInt(RANKS.length)])
+                    .append("teamName", "Équipe " + (i % 32))
+                    .append("reputation", reputation));
+        }
+        return users;
+    }
+
+    /**
+     * Crée des logos PNG dans un dossier temporaire, comme le ferait le cache d'images sur disque.
+     * @param count Nombre d'équipes
+     * @return Les documents teams (name, color, logo)
+     */
+    public static Map<String, Document> teams(int count) throws IOException {
+        Path directory = Files.createTempDirectory("trqcbot-bench-logos");
+        directory.toFile().deleteOnExit();
+        Map<String, Document> teams = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Color color = Color.getHSBColor(i / (float) count, 0.7f, 0.8f);
+            File logo = directory.resolve("logo-" + i + ".png").toFile();
+            logo.deleteOnExit();
+            ImageIO.write(logo(color), "png", logo);
+            String name = "Équipe " + i;
+            teams.put(name, new Document("name", name)
+                    .append("color", String.format("#%06X", color.getRGB() & 0xFFFFFF))
+                    .append("logo", logo.getAbsolutePath()));
+        }
+        return teams;
+    }
+
+    /**
+     * @return Un avatar synthétique de 128x128
+     */
+    public static BufferedImage avatar() {
+        return logo(new Color(88, 101, 242));
+    }
+
+    private static BufferedImage logo(Color color) {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(color);
+        g.fillOval(8, 8, 240, 240);
+        g.setColor(Color.WHITE);
+        g.setStroke(new BasicStroke(12f));
+        g.drawOval(40, 40, 176, 176);
+        g.dispose();
+        return image;
+    }
+}
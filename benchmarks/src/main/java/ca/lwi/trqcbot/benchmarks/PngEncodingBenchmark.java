@@ -0,0 +1,47 @@
+package ca.lwi.trqcbot.benchmarks;
+
+import ca.lwi.trqcbot.utils.ImageUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodage PNG des images générées (étape commune à tous les rendus envoyés sur Discord).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PngEncodingBenchmark {
+
+    // Tailles des cartes de rang, des classements et des offres de contrat
+    @Param({"800x400", "800x750", "1200x520"})
+    private String size;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        String[] parts = size.split("x");
+        int width = Integer.parseInt(parts[0]);
+        int height = Integer.parseInt(parts[1]);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(30, 60, 140), width, height, Color.BLACK));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font("Arial", Font.BOLD, 24));
+        for (int y = 40; y < height; y += 60) g.drawString("Joueur " + y + " — 87 pts", 40, y);
+        g.dispose();
+    }
+
+    @Benchmark
+    public byte[] encodePng() throws IOException {
+        return ImageUtils.toPng(image);
+    }
+}
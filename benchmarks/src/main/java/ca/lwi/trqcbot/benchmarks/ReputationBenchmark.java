@@ -0,0 +1,74 @@
+package ca.lwi.trqcbot.benchmarks;
+
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import ca.lwi.trqcbot.reputation.ReputationSnapshot;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du calcul de réputation, par utilisateur et pour un recalcul complet,
+ * à partir des documents et à partir d'instantanés primitifs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReputationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int userCount;
+
+    private List<Document> users;
+    private ReputationSnapshot[] snapshots;
+    private int[] scores;
+    private long now;
+    private int index;
+
+    @Setup
+    public void setup() {
+        users = Fixtures.users(userCount, 42);
+        snapshots = users.stream().map(ReputationSnapshot::fromDocument).toArray(ReputationSnapshot[]::new);
+        scores = new int[snapshots.length];
+        now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public int calculateReputation() {
+        Document user = users.get(index);
+        index = (index + 1) % users.size();
+        return ReputationManager.calculateReputation(user);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void calculateReputationAllUsers(Blackhole blackhole) {
+        for (Document user : users) blackhole.consume(ReputationManager.calculateReputation(user));
+    }
+
+    @Benchmark
+    public int scoreSnapshot() {
+        ReputationSnapshot snapshot = snapshots[index];
+        index = (index + 1) % snapshots.length;
+        return ReputationManager.score(snapshot, now);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] scoreAllSnapshots() {
+        ReputationManager.scoreAll(snapshots, scores, now, false);
+        return scores;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] scoreAllSnapshotsParallel() {
+        ReputationManager.scoreAll(snapshots, scores, now, true);
+        return scores;
+    }
+}
@@ -0,0 +1,88 @@
+package ca.lwi.trqcbot.benchmarks;
+
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import ca.lwi.trqcbot.teams.TeamManager;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores du classement des équipes (50 000 utilisateurs répartis entre 32 équipes) : une agrégation $match/$group,
+ * comparée à l'ancienne lecture de tous les utilisateurs pour chaque équipe.
+ * Nécessite un serveur MongoDB : MONGO_URI (et MONGO_BENCH_DATABASE, "trqcbot_bench" par défaut).
+ * La collection users de cette base est remplacée par des données synthétiques puis supprimée.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TeamScoresBenchmark {
+
+    private static final int TEAM_COUNT = 32;
+    private static final int INSERT_BATCH = 5_000;
+
+    // Total réparti entre les 32 équipes
+    @Param({"50000"})
+    private int userCount;
+
+    private MongoClient client;
+    private MongoCollection<Document> users;
+
+    @Setup
+    public void setup() {
+        String uri = System.getenv("MONGO_URI");
+        if (uri == null || uri.isBlank()) {
+            throw new IllegalStateException("TeamScoresBenchmark nécessite un serveur MongoDB : définir MONGO_URI");
+        }
+        String databaseName = System.getenv().getOrDefault("MONGO_BENCH_DATABASE", "trqcbot_bench");
+        client = MongoClients.create(uri);
+        users = client.getDatabase(databaseName).getCollection("users");
+        users.drop();
+
+        // Fixtures.users répartit les utilisateurs entre 32 équipes ; un seul lot en mémoire à la fois
+        for (int from = 0; from < userCount; from += INSERT_BATCH) {
+            List<Document> batch = Fixtures.users(from, Math.min(INSERT_BATCH, userCount - from), 42);
+            for (Document user : batch) {
+                user.get("reputation", Document.class).append("reputationScore", ReputationManager.calculateReputation(user));
+            }
+            users.insertMany(batch);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (users != null) users.drop();
+        if (client != null) client.close();
+    }
+
+    @Benchmark
+    public Map<String, TeamManager.TeamScore> aggregation() {
+        return TeamManager.aggregateTeamScores(users);
+    }
+
+    // Ancienne implémentation : tous les utilisateurs sont relus pour chaque équipe
+    @Benchmark
+    public Map<String, Long> scanPerTeam() {
+        Map<String, Long> totals = new HashMap<>();
+        for (int team = 0; team < TEAM_COUNT; team++) {
+            String teamName = "Équipe " + team;
+            long total = 0;
+            for (Document user : users.find()) {
+                if (!teamName.equals(user.getString("teamName"))) continue;
+                Document reputation = user.get("reputation", Document.class);
+                if (reputation != null) total += reputation.getInteger("reputationScore", 0);
+            }
+            totals.put(teamName, total);
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,70 @@
+package ca.lwi.trqcbot.commands.list;
+
+import ca.lwi.trqcbot.benchmarks.Fixtures;
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération des images de classement (joueurs et équipes), encodage PNG compris.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardImageBenchmark {
+
+    // 10 lignes pour /leaderboard, 40 pour un classement d'équipe complet
+    @Param({"10", "40"})
+    private int rows;
+
+    private List<ComLeaderboard.UserReputation> players;
+    private List<ComLeaderboard.TeamReputation> teams;
+
+    @Setup
+    public void setup() throws Exception {
+        Fixtures.loadFonts();
+        Map<String, Document> teamDocs = Fixtures.teams(32);
+        List<Document> users = Fixtures.users(rows, 7);
+
+        players = new ArrayList<>(rows);
+        for (int i = 0; i < users.size(); i++) {
+            Document user = users.get(i);
+            int score = ReputationManager.calculateReputation(user);
+            Document team = teamDocs.get(user.getString("teamName"));
+            ComLeaderboard.UserReputation row = new ComLeaderboard.UserReputation(user.getString("userId"), user.getString("username"),
+                    score, ReputationManager.getReputationRank(score), user.getString("teamName"), team.getString("logo"));
+            row.setRank(i + 1);
+            players.add(row);
+        }
+
+        teams = new ArrayList<>();
+        int rank = 1;
+        for (Document team : teamDocs.values()) {
+            if (teams.size() >= Math.min(rows, 10)) break;
+            ComLeaderboard.TeamReputation row = new ComLeaderboard.TeamReputation(team.getString("name"), team.getString("logo"));
+            row.setMemberCount(25);
+            row.setTotalReputationScore(25 * (90 - rank * 3));
+            row.setRank(rank++);
+            teams.add(row);
+        }
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream playerLeaderboard() throws Exception {
+        return ComLeaderboard.generatePlayerLeaderboardImage(players);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream teamLeaderboard() throws Exception {
+        return ComLeaderboard.generateTeamLeaderboardImage(teams);
+    }
+}
@@ -0,0 +1,49 @@
+package ca.lwi.trqcbot.commands.list;
+
+import ca.lwi.trqcbot.benchmarks.Fixtures;
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération de la carte de joueur de /rank, encodage PNG compris.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankCardBenchmark {
+
+    @Param({"true", "false"})
+    private boolean withClauses;
+
+    private String logoPath;
+    private Color teamColor;
+    private BufferedImage avatar;
+    private int reputationScore;
+
+    @Setup
+    public void setup() throws Exception {
+        Fixtures.loadFonts();
+        Document team = Fixtures.teams(1).values().iterator().next();
+        logoPath = team.getString("logo");
+        teamColor = Color.decode(team.getString("color"));
+        avatar = Fixtures.avatar();
+        reputationScore = ReputationManager.calculateReputation(Fixtures.users(1, 3).getFirst());
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream playerCard() throws Exception {
+        return ComRank.generateModernPlayerCard("JoueurBenchmark", "Équipe 0", "12 mars 2025", "42", "Joueur",
+                teamColor, logoPath, avatar, reputationScore, ReputationManager.getReputationRank(reputationScore),
+                3, 4_500_000, "2 volets", withClauses, withClauses,
+                withClauses ? "Protection contre 8 équipes" : "", withClauses ? "Complète" : "");
+    }
+}
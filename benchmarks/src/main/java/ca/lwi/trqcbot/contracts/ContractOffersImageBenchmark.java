@@ -0,0 +1,48 @@
+package ca.lwi.trqcbot.contracts;
+
+import ca.lwi.trqcbot.benchmarks.Fixtures;
+import ca.lwi.trqcbot.utils.ImageUtils;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération de l'image des trois offres de contrat envoyée en message privé.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContractOffersImageBenchmark {
+
+    private Map<String, Document> teams;
+    private List<ContractsManager.ContractOffer> offers;
+
+    @Setup
+    public void setup() throws Exception {
+        Fixtures.loadFonts();
+        teams = Fixtures.teams(3);
+        offers = List.of(
+                new ContractsManager.ContractOffer("Équipe 0", 3, 4.5, "2 volets", true, false, "Protection contre 8 équipes", ""),
+                new ContractsManager.ContractOffer("Équipe 1", 2, 2.75, "1 volet", false, false, "", ""),
+                new ContractsManager.ContractOffer("Équipe 2", 5, 7.25, "1 volet", true, true, "Protection contre 12 équipes", "Complète")
+        );
+    }
+
+    @Benchmark
+    public BufferedImage offersImage() {
+        return ContractsManager.generateContractOffersImage(offers, teams::get);
+    }
+
+    @Benchmark
+    public byte[] offersImagePng() throws IOException {
+        return ImageUtils.toPng(ContractsManager.generateContractOffersImage(offers, teams::get));
+    }
+}
@@ -4,13 +4,17 @@ import ca.lwi.trqcbot.commands.manager.CommandsManager;
 import ca.lwi.trqcbot.contracts.ContractsManager;
 import ca.lwi.trqcbot.donations.DonationsManager;
 import ca.lwi.trqcbot.draft.DraftMessageHandler;
+import ca.lwi.trqcbot.events.DispatchEventManager;
 import ca.lwi.trqcbot.listeners.GuildMemberJoinListeners;
 import ca.lwi.trqcbot.listeners.ReadyListeners;
+import ca.lwi.trqcbot.members.MemberNameResolver;
+import ca.lwi.trqcbot.metrics.Metrics;
 import ca.lwi.trqcbot.mongo.MongoConnection;
 import ca.lwi.trqcbot.mongo.MongoCredentials;
 import ca.lwi.trqcbot.ranks.RankManager;
 import ca.lwi.trqcbot.recovery.ContractRecoveryHandler;
 import ca.lwi.trqcbot.recovery.MemberRecoveryHandler;
+import ca.lwi.trqcbot.render.RenderService;
 import ca.lwi.trqcbot.ressources.ResourcesManager;
 import ca.lwi.trqcbot.teams.TeamManager;
 import ca.lwi.trqcbot.tickets.TicketsHandler;
@@ -55,6 +59,12 @@ public class Main {
     private static ContractRecoveryHandler contractsRecoveryHandler;
     @Getter
     private static CommandsManager commandsManager;
+    @Getter
+    private static DispatchEventManager eventManager;
+    @Getter
+    private static MemberNameResolver memberNameResolver;
+    @Getter
+    private static RenderService renderService;
 
     public static void main(String[] args) throws IOException, FontFormatException {
         System.setProperty("log4j2.disable.jmx", "true");
@@ -67,6 +77,10 @@ public class Main {
         mongoConnection = new MongoConnection(mongoCredentials);
         try {
             mongoConnection.init();
+        } catch (IllegalStateException e) {
+            // Vérification des plans d'exécution activée et une requête n'a pas d'index
+            System.err.println("MongoDB query plan verification failed: " + e.getMessage());
+            System.exit(1);
         } catch (Exception e) {
             System.err.println("Failed to initialize MongoDB: " + e.getMessage());
         }
@@ -75,6 +89,7 @@ public class Main {
         rankManager = new RankManager();
         resourcesManager = new ResourcesManager();
         teamManager = new TeamManager();
+        teamManager.start();
         ticketsHandler = new TicketsHandler();
         draftMessageHandler = new DraftMessageHandler();
 //        YouTubeWatcher watcher = new YouTubeWatcher();
@@ -82,9 +97,13 @@ public class Main {
         membersRecoveryHandler = new MemberRecoveryHandler();
         contractsRecoveryHandler = new ContractRecoveryHandler();
         commandsManager = new CommandsManager();
+        eventManager = DispatchEventManager.fromEnv(dotenv);
+        memberNameResolver = MemberNameResolver.fromEnv(dotenv);
+        renderService = RenderService.fromEnv(dotenv);
 
         jda = JDABuilder
                 .create(dotenv.get("DISC_TOKEN"), GatewayIntent.GUILD_MEMBERS, GatewayIntent.GUILD_MESSAGES, GatewayIntent.MESSAGE_CONTENT, GatewayIntent.GUILD_VOICE_STATES)
+                .setEventManager(eventManager)
                 .setStatus(OnlineStatus.DO_NOT_DISTURB)
                 .setActivity(Activity.playing("Match de Hockey"))
                 .addEventListeners(donationsManager)
@@ -95,6 +114,7 @@ public class Main {
                 .addEventListeners(commandsManager)
                 .addEventListeners(new GuildMemberJoinListeners())
                 .addEventListeners(new ReadyListeners())
+                .addEventListeners(memberNameResolver)
                 .build();
 
         resourcesManager.registerEventListeners(jda);
@@ -105,11 +125,16 @@ public class Main {
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Arrêt du bot en cours...");
+            // Arrêter la réception d'événements avant d'écrire les données en attente
+            if (jda != null) jda.shutdown();
+            if (eventManager != null) eventManager.shutdown();
             if (rankManager != null) rankManager.shutdown();
-            if (mongoConnection != null) mongoConnection.close();
             if (membersRecoveryHandler != null) membersRecoveryHandler.shutdown();
             if (contractsRecoveryHandler != null) contractsRecoveryHandler.shutdown();
-            if (jda != null) jda.shutdown();
+            if (contractsManager != null) contractsManager.shutdown();
+            if (teamManager != null) teamManager.shutdown();
+            if (renderService != null) renderService.shutdown();
+            if (mongoConnection != null) mongoConnection.close();
             System.out.println("Arrêt terminé.");
         }));
     }
@@ -126,8 +151,10 @@ public class Main {
                     scanner.close();
                     System.exit(0);
                     return;
+                } else if (line.equalsIgnoreCase("metrics")) {
+                    System.out.println(Metrics.report());
                 } else if (line.equalsIgnoreCase("help")) {
-                    System.out.println("Commandes disponibles : stop, exit, shutdown, help");
+                    System.out.println("Commandes disponibles : stop, exit, shutdown, metrics, help");
                 }
             }
         });
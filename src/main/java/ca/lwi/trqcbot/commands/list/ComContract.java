@@ -187,7 +187,10 @@ public class ComContract extends Command {
         }
         
         // Générer de nouvelles offres
-        contractsManager.sendContractOffers(e.getUser());
+        if (!contractsManager.sendContractOffers(e.getUser())) {
+            e.getHook().sendMessage("Impossible de générer vos offres de contrat pour le moment. Réessayez plus tard.").queue();
+            return;
+        }
         
         e.getHook().sendMessage("Des offres de contrat vous ont été envoyées en message privé. " +
                                     "Vous avez 3 jours pour en accepter une, sinon vous deviendrez un agent libre.").queue();
@@ -210,7 +213,10 @@ public class ComContract extends Command {
             }
             
             // Générer et envoyer des offres
-            contractsManager.sendContractOffers(targetUser);
+            if (!contractsManager.sendContractOffers(targetUser)) {
+                e.getHook().sendMessage("Impossible de générer les offres de contrat de **" + targetMember.getEffectiveName() + "**.").queue();
+                return;
+            }
             
             e.getHook().sendMessage("Des offres de contrat ont été générées et envoyées à **" +
                                         targetMember.getEffectiveName() + "**.").queue();
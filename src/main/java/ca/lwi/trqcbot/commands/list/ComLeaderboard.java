@@ -2,6 +2,10 @@ package ca.lwi.trqcbot.commands.list;
 
 import ca.lwi.trqcbot.Main;
 import ca.lwi.trqcbot.commands.Command;
+import ca.lwi.trqcbot.ranks.LeaderboardIndex;
+import ca.lwi.trqcbot.render.RenderService;
+import ca.lwi.trqcbot.repositories.UserRecord;
+import ca.lwi.trqcbot.teams.TeamManager;
 import ca.lwi.trqcbot.reputation.ReputationManager;
 import ca.lwi.trqcbot.utils.FontUtils;
 import ca.lwi.trqcbot.utils.ImageUtils;
@@ -25,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class ComLeaderboard extends Command {
@@ -87,8 +92,7 @@ public class ComLeaderboard extends Command {
         switch (subcommandName) {
             case "players":
                 Member searchedMember = e.getOption("membre") != null ? Objects.requireNonNull(e.getOption("membre")).getAsMember() : null;
-                String searchedUserId = searchedMember != null ? searchedMember.getId() : null;
-                generatePlayerLeaderboard(e, searchedUserId);
+                generatePlayerLeaderboard(e, searchedMember);
                 break;
             case "teams":
                 String searchedTeamName = e.getOption("equipe") != null ? Objects.requireNonNull(e.getOption("equipe")).getAsString() : null;
@@ -99,76 +103,66 @@ public class ComLeaderboard extends Command {
         }
     }
 
-    private void generatePlayerLeaderboard(SlashCommandInteractionEvent e, String searchedUserId) {
+    private void generatePlayerLeaderboard(SlashCommandInteractionEvent e, Member searchedMember) {
         try {
-            List<Document> allUsers = Main.getRankManager().getAllUsersData();
-            List<UserReputation> allUsersReputation = new ArrayList<>();
-
             Guild guild = e.getGuild();
             if (guild == null) {
                 e.getHook().sendMessage("Erreur: Impossible de récupérer les informations du serveur.").queue();
                 return;
             }
 
-            for (Document userData : allUsers) {
-                String userId = userData.getString("userId");
-                Document reputation = (Document) userData.get("reputation");
-                if (reputation == null) reputation = new Document();
-                int reputationScore = reputation.getInteger("reputationScore");
-                String reputationRank = ReputationManager.getReputationRank(reputationScore);
-                String teamName = userData.getString("teamName");
-
-                // Récupérer les informations de l'équipe depuis la DB teams
-                Document teamData = Main.getTeamManager().getTeamByName(teamName);
-                String logoPath = teamData != null ? teamData.getString("logo") : null;
+            // Déterminer les joueurs à afficher à partir du classement en mémoire
+            LeaderboardIndex leaderboard = Main.getRankManager().getLeaderboardIndex();
+            List<LeaderboardIndex.Entry> entries;
+            if (searchedMember == null) {
+                entries = leaderboard.top(DISPLAY_COUNT);
+            } else {
+                int userRank = leaderboard.rankOf(searchedMember.getId());
+                if (userRank > 0) {
+                    // Plage centrée sur le joueur recherché
+                    entries = leaderboard.around(searchedMember.getId(), DISPLAY_COUNT);
+                    e.getHook().sendMessage("✅ **" + searchedMember.getEffectiveName() + "** est classé #" + userRank + " !").queue();
+                } else {
+                    entries = leaderboard.top(DISPLAY_COUNT);
+                    e.getHook().sendMessage("❌ Le membre " + searchedMember.getId() + " n'a pas été trouvé. Voici le top " + DISPLAY_COUNT + ".").queue();
+                }
+            }
 
+            // Récupérer uniquement les données et les noms des joueurs affichés
+            List<String> userIds = entries.stream().map(LeaderboardIndex.Entry::userId).collect(Collectors.toList());
+            Map<String, UserRecord> usersData = Main.getRankManager().getUsersData(userIds);
+            Main.getMemberNameResolver().resolveNames(guild, userIds).thenAccept(names -> {
                 try {
-                    Member member = guild.retrieveMemberById(userId).complete();
-                    if (member != null) {
-                        String username = member.getEffectiveName();
-                        allUsersReputation.add(new UserReputation(userId, username, reputationScore, reputationRank, teamName, logoPath));
-                    }
-                } catch (Exception ignored) {}
-            }
+                    List<UserReputation> usersToDisplay = new ArrayList<>();
+                    for (LeaderboardIndex.Entry entry : entries) {
+                        UserRecord userData = usersData.get(entry.userId());
+                        String teamName = userData != null ? userData.teamName() : null;
 
-            // Trier par score de réputation (décroissant)
-            allUsersReputation.sort(Comparator.comparingInt(UserReputation::getReputationScore).reversed());
+                        // Récupérer les informations de l'équipe depuis la DB teams
+                        Document teamData = teamName != null ? Main.getTeamManager().getTeamByName(teamName) : null;
+                        String logoPath = teamData != null ? teamData.getString("logo") : null;
 
-            // Assigner des rangs
-            for (int i = 0; i < allUsersReputation.size(); i++) {
-                allUsersReputation.get(i).setRank(i + 1);
-            }
+                        String username = names.get(entry.userId());
+                        if (username == null) username = userData != null && userData.username() != null ? userData.username() : entry.userId();
 
-            // Déterminer les joueurs à afficher
-            List<UserReputation> usersToDisplay;
-            if (searchedUserId == null) {
-                usersToDisplay = allUsersReputation.stream().limit(DISPLAY_COUNT).collect(Collectors.toList());
-            } else {
-                Optional<UserReputation> foundUser = allUsersReputation.stream().filter(user -> user.getUserId().equals(searchedUserId)).findFirst();
-                if (foundUser.isPresent()) {
-                    UserReputation user = foundUser.get();
-                    int userRank = allUsersReputation.indexOf(user);
-
-                    // Calculer la plage à afficher (centrée sur le joueur recherché)
-                    int startIndex = Math.max(0, userRank - DISPLAY_COUNT / 2);
-                    int endIndex = Math.min(allUsersReputation.size(), startIndex + DISPLAY_COUNT);
-
-                    // Ajuster startIndex si endIndex est limité par la taille de la liste
-                    if (endIndex == allUsersReputation.size() && endIndex - startIndex < DISPLAY_COUNT) {
-                        startIndex = Math.max(0, endIndex - DISPLAY_COUNT);
+                        UserReputation user = new UserReputation(entry.userId(), username, entry.score(), ReputationManager.getReputationRank(entry.score()), teamName, logoPath);
+                        user.setRank(entry.rank());
+                        usersToDisplay.add(user);
                     }
 
-                    usersToDisplay = allUsersReputation.subList(startIndex, endIndex);
-                    e.getHook().sendMessage("✅ **" + user.getUsername() + "** est classé #" + user.getRank() + " !").queue();
-                } else {
-                    usersToDisplay = allUsersReputation.stream().limit(DISPLAY_COUNT).collect(Collectors.toList());
-                    e.getHook().sendMessage("❌ Le membre " + searchedUserId + " n'a pas été trouvé. Voici le top " + DISPLAY_COUNT + ".").queue();
+                    // Générer l'image du leaderboard
+                    renderPlayerLeaderboard("player_leaderboard", usersToDisplay).whenComplete((imageBytes, error) -> {
+                        if (error != null) {
+                            e.getHook().sendMessage("Erreur lors de la génération du classement: " + error.getMessage()).queue();
+                            return;
+                        }
+                        e.getHook().sendFiles(FileUpload.fromData(imageBytes, "leaderboard.png")).queue();
+                    });
+                } catch (Exception ex) {
+                    e.getHook().sendMessage("Erreur lors de la génération du classement: " + ex.getMessage()).queue();
+                    ex.printStackTrace();
                 }
-            }
-
-            // Générer l'image du leaderboard
-            ByteArrayOutputStream outputStream = generatePlayerLeaderboardImage(usersToDisplay);
-            e.getHook().sendFiles(FileUpload.fromData(outputStream.toByteArray(), "leaderboard.png")).queue();
+            });
 
         } catch (Exception ex) {
             e.getHook().sendMessage("Erreur lors de la génération du classement: " + ex.getMessage()).queue();
@@ -183,30 +177,21 @@ public class ComLeaderboard extends Command {
                 return;
             }
 
-            // Récupérer toutes les équipes
+            // Récupérer toutes les équipes et leurs scores (une seule agrégation)
             List<Document> allTeams = Main.getTeamManager().getAllTeams();
+            Map<String, TeamManager.TeamScore> teamScores = Main.getTeamManager().getTeamScores();
             List<TeamReputation> allTeamsReputation = new ArrayList<>();
 
-            // Pour chaque équipe
             for (Document teamData : allTeams) {
                 String teamName = teamData.getString("name");
                 String logoPath = teamData.getString("logo");
 
                 TeamReputation teamRep = new TeamReputation(teamName, logoPath);
-
-                // Récupérer tous les membres de cette équipe
-                List<Document> allUsers = Main.getRankManager().getAllUsersData();
-                for (Document userData : allUsers) {
-                    String userTeam = userData.getString("teamName");
-                    if (userTeam != null && userTeam.equals(teamName)) {
-                        Document reputation = (Document) userData.get("reputation");
-                        if (reputation != null) {
-                            int reputationScore = reputation.getInteger("reputationScore", 0);
-                            teamRep.addMemberScore(reputationScore);
-                        }
-                    }
+                TeamManager.TeamScore teamScore = teamScores.get(teamName);
+                if (teamScore != null) {
+                    teamRep.setMemberCount(teamScore.memberCount());
+                    teamRep.setTotalReputationScore((int) teamScore.totalScore());
                 }
-
                 allTeamsReputation.add(teamRep);
             }
 
@@ -223,8 +208,14 @@ public class ComLeaderboard extends Command {
             teamsToDisplay = allTeamsReputation.stream().limit(DISPLAY_COUNT).collect(Collectors.toList());
 
             // Générer l'image du leaderboard
-            ByteArrayOutputStream outputStream = generateTeamLeaderboardImage(teamsToDisplay);
-            e.getHook().sendFiles(FileUpload.fromData(outputStream.toByteArray(), "team_leaderboard.png")).queue();
+            String renderKey = RenderService.key(teamsToDisplay.stream().map(TeamReputation::renderKey).toArray());
+            Main.getRenderService().render("team_leaderboard", renderKey, () -> generateTeamLeaderboardImage(teamsToDisplay).toByteArray()).whenComplete((imageBytes, error) -> {
+                if (error != null) {
+                    e.getHook().sendMessage("Erreur lors de la génération du classement des équipes: " + error.getMessage()).queue();
+                    return;
+                }
+                e.getHook().sendFiles(FileUpload.fromData(imageBytes, "team_leaderboard.png")).queue();
+            });
 
         } catch (Exception ex) {
             e.getHook().sendMessage("Erreur lors de la génération du classement des équipes: " + ex.getMessage()).queue();
@@ -242,8 +233,7 @@ public class ComLeaderboard extends Command {
             }
 
             // Récupérer tous les membres de cette équipe
-            List<Document> allUsers = Main.getRankManager().getAllUsersData();
-            List<UserReputation> teamMembers = new ArrayList<>();
+            List<UserRecord> allUsers = Main.getTeamManager().getAllUsersFromTeam(teamName);
 
             Guild guild = e.getGuild();
             if (guild == null) {
@@ -252,43 +242,52 @@ public class ComLeaderboard extends Command {
             }
 
             String logoPath = teamData.getString("logo");
+            List<String> userIds = allUsers.stream().map(UserRecord::userId).collect(Collectors.toList());
 
-            for (Document userData : allUsers) {
-                String userTeam = userData.getString("teamName");
-                if (userTeam != null && userTeam.equals(teamName)) {
-                    String userId = userData.getString("userId");
-                    Document reputation = (Document) userData.get("reputation");
-                    if (reputation == null) reputation = new Document();
-                    int reputationScore = reputation.getInteger("reputationScore", 0);
-                    String reputationRank = ReputationManager.getReputationRank(reputationScore);
-                    try {
-                        Member member = guild.retrieveMemberById(userId).complete();
-                        if (member != null) {
-                            String username = member.getEffectiveName();
+            Main.getMemberNameResolver().resolveNames(guild, userIds).thenAccept(names -> {
+                try {
+                    List<UserReputation> teamMembers = new ArrayList<>();
+                    for (UserRecord userData : allUsers) {
+                        String userTeam = userData.teamName();
+                        if (userTeam != null && userTeam.equals(teamName)) {
+                            String userId = userData.userId();
+                            // Ignorer les joueurs qui ne sont plus sur le serveur
+                            String username = names.get(userId);
+                            if (username == null) continue;
+                            int reputationScore = userData.reputation().reputationScore();
+                            String reputationRank = ReputationManager.getReputationRank(reputationScore);
                             teamMembers.add(new UserReputation(userId, username, reputationScore, reputationRank, teamName, logoPath));
                         }
-                    } catch (Exception ignored) {}
-                }
-            }
+                    }
 
-            // Trier par score de réputation (décroissant)
-            teamMembers.sort(Comparator.comparingInt(UserReputation::getReputationScore).reversed());
+                    // Trier par score de réputation (décroissant)
+                    teamMembers.sort(Comparator.comparingInt(UserReputation::getReputationScore).reversed());
 
-            // Assigner des rangs
-            for (int i = 0; i < teamMembers.size(); i++) {
-                teamMembers.get(i).setRank(i + 1);
-            }
+                    // Assigner des rangs
+                    for (int i = 0; i < teamMembers.size(); i++) {
+                        teamMembers.get(i).setRank(i + 1);
+                    }
 
-            if (teamMembers.isEmpty()) {
-                e.getHook().sendMessage("L'équipe **" + teamName + "** n'a aucun membre.").queue();
-                return;
-            }
+                    if (teamMembers.isEmpty()) {
+                        e.getHook().sendMessage("L'équipe **" + teamName + "** n'a aucun membre.").queue();
+                        return;
+                    }
 
-            e.getHook().sendMessage("✅ Classement de l'équipe **" + teamName + "** (" + teamMembers.size() + " joueur" + (teamMembers.size() > 1 ? "s" : "") + ")").queue();
+                    e.getHook().sendMessage("✅ Classement de l'équipe **" + teamName + "** (" + teamMembers.size() + " joueur" + (teamMembers.size() > 1 ? "s" : "") + ")").queue();
 
-            // Générer l'image du leaderboard des membres
-            ByteArrayOutputStream outputStream = generatePlayerLeaderboardImage(teamMembers);
-            e.getHook().sendFiles(FileUpload.fromData(outputStream.toByteArray(), "team_members.png")).queue();
+                    // Générer l'image du leaderboard des membres
+                    renderPlayerLeaderboard("team_members", teamMembers).whenComplete((imageBytes, error) -> {
+                        if (error != null) {
+                            e.getHook().sendMessage("Erreur lors de l'affichage des membres de l'équipe: " + error.getMessage()).queue();
+                            return;
+                        }
+                        e.getHook().sendFiles(FileUpload.fromData(imageBytes, "team_members.png")).queue();
+                    });
+                } catch (Exception ex) {
+                    e.getHook().sendMessage("Erreur lors de l'affichage des membres de l'équipe: " + ex.getMessage()).queue();
+                    ex.printStackTrace();
+                }
+            });
 
         } catch (Exception ex) {
             e.getHook().sendMessage("Erreur lors de l'affichage des membres de l'équipe: " + ex.getMessage()).queue();
@@ -296,7 +295,12 @@ public class ComLeaderboard extends Command {
         }
     }
 
-    private ByteArrayOutputStream generatePlayerLeaderboardImage(List<UserReputation> users) throws IOException, FontFormatException {
+    private CompletableFuture<byte[]> renderPlayerLeaderboard(String template, List<UserReputation> users) {
+        String renderKey = RenderService.key(users.stream().map(UserReputation::renderKey).toArray());
+        return Main.getRenderService().render(template, renderKey, () -> generatePlayerLeaderboardImage(users).toByteArray());
+    }
+
+    static ByteArrayOutputStream generatePlayerLeaderboardImage(List<UserReputation> users) throws IOException, FontFormatException {
         final int width = 800;
 
         // Hauteur calculée précisément pour le nombre d'utilisateurs
@@ -445,7 +449,7 @@ public class ComLeaderboard extends Command {
         return outputStream;
     }
 
-    private ByteArrayOutputStream generateTeamLeaderboardImage(List<TeamReputation> teams) throws IOException, FontFormatException {
+    static ByteArrayOutputStream generateTeamLeaderboardImage(List<TeamReputation> teams) throws IOException, FontFormatException {
         final int width = 800;
 
         // Hauteur calculée précisément pour le nombre d'équipes
@@ -598,7 +602,7 @@ public class ComLeaderboard extends Command {
     // Classe pour stocker les informations de réputation d'un utilisateur
     @Getter
     @Setter
-    private static class UserReputation {
+    static class UserReputation {
 
         private final String userId;
         private final String username;
@@ -617,11 +621,16 @@ public class ComLeaderboard extends Command {
             this.logoPath = logoPath;
             this.rank = 0;
         }
+
+        // Tout ce qui est affiché pour cette ligne
+        private String renderKey() {
+            return RenderService.key(userId, username, reputationScore, reputationRank, teamName, logoPath, rank);
+        }
     }
 
     @Getter
     @Setter
-    private static class TeamReputation {
+    static class TeamReputation {
 
         private final String teamName;
         private int memberCount;
@@ -645,5 +654,10 @@ public class ComLeaderboard extends Command {
         public int getAverageReputationScore() {
             return this.memberCount > 0 ? this.totalReputationScore / this.memberCount : 0;
         }
+
+        // Tout ce qui est affiché pour cette ligne
+        private String renderKey() {
+            return RenderService.key(teamName, memberCount, totalReputationScore, logoPath, rank);
+        }
     }
 }
\ No newline at end of file
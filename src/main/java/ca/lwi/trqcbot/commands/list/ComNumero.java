@@ -23,7 +23,6 @@ import java.util.stream.IntStream;
 public class ComNumero extends Command {
 
     private final MongoCollection<Document> usersCollection;
-    private final MongoCollection<Document> teamsCollection;
     private final MongoCollection<Document> lineupCollection;
     private final ComTeam teamCommand;
 
@@ -33,7 +32,6 @@ public class ComNumero extends Command {
         super("numero", "Changer votre numéro (vétérans seulement)");
         MongoDatabase database = Main.getMongoConnection().getDatabase();
         this.usersCollection = database.getCollection("users");
-        this.teamsCollection = database.getCollection("teams");
         this.lineupCollection = database.getCollection("teams_lineup");
         this.teamCommand = teamCommand;
         
@@ -62,7 +60,7 @@ public class ComNumero extends Command {
         }
 
         String teamName = userDoc.getString("teamName");
-        Document teamDoc = teamsCollection.find(Filters.eq("name", teamName)).first();
+        Document teamDoc = Main.getTeamManager().getTeamByName(teamName);
         if (teamDoc == null) {
             e.reply("❌ Cette équipe n'existe pas.").setEphemeral(true).queue();
             return;
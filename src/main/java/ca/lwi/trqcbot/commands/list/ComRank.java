@@ -2,6 +2,10 @@ package ca.lwi.trqcbot.commands.list;
 
 import ca.lwi.trqcbot.Main;
 import ca.lwi.trqcbot.commands.Command;
+import ca.lwi.trqcbot.contracts.ContractsManager;
+import ca.lwi.trqcbot.render.RenderService;
+import ca.lwi.trqcbot.repositories.ContractRecord;
+import ca.lwi.trqcbot.repositories.UserRecord;
 import ca.lwi.trqcbot.reputation.ReputationManager;
 import ca.lwi.trqcbot.utils.FontUtils;
 import ca.lwi.trqcbot.utils.ImageUtils;
@@ -25,6 +29,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 public class ComRank extends Command {
 
@@ -59,28 +64,17 @@ public class ComRank extends Command {
         }
 
         String userId = targetUser.getId();
-        Document userData = Main.getRankManager().getUserData(userId);
+        UserRecord userData = Main.getRankManager().getUserDataForDisplay(userId);
         if (userData != null) {
             Member member = e.getMember();
             if (member == null) return;
             String username = targetMember.getEffectiveName();
-            String teamName = userData.getString("teamName");
-            int roundPick = userData.getInteger("roundPick", 0);
-            String rank = userData.getString("currentRank");
-
-            Date joinDate;
-            Object joinDateValue = userData.get("joinDate");
-            if (joinDateValue instanceof Long) {
-                joinDate = new Date((Long) joinDateValue);
-            } else if (joinDateValue instanceof Date) {
-                joinDate = (Date) joinDateValue;
-            } else {
-                joinDate = new Date();
-            }
+            String teamName = userData.teamName();
+            int roundPick = userData.roundPick();
+            String rank = userData.currentRank();
+            Date joinDate = userData.joinDate() != null ? userData.joinDate() : new Date();
 
-            Document reputation = (Document) userData.get("reputation");
-            if (reputation == null) reputation = new Document();
-            int reputationScore = reputation.getInteger("reputationScore", 0);
+            int reputationScore = userData.reputation().reputationScore();
             String reputationRank = ReputationManager.getReputationRank(reputationScore);
 
             // Formatage de la date
@@ -108,9 +102,7 @@ public class ComRank extends Command {
             }
 
             // Récupérer les informations du contrat
-            // Ces valeurs seraient normalement extraites de la base de données
-            // Pour l'exemple, nous utiliserons des valeurs fictives
-            Document contractData = userData.get("contract", Document.class);
+            ContractRecord contractData = userData.contract();
             int contractYears = 0;
             double contractSalary = 0.0;
             String contractType = "N/A";
@@ -120,19 +112,28 @@ public class ComRank extends Command {
             String nmcDetails = "";
 
             if (contractData != null) {
-                contractYears = contractData.getInteger("years", 0);
-                contractSalary = contractData.getInteger("salary").doubleValue();
-                contractType = contractData.getString("type");
-                hasNTC = contractData.getBoolean("hasNTC", false);
-                hasNMC = contractData.getBoolean("hasNMC", false);
-                ntcDetails = contractData.getString("ntcDetails");
-                nmcDetails = contractData.getString("nmcDetails");
+                contractYears = contractData.years();
+                contractSalary = contractData.salary();
+                contractType = contractData.type();
+                hasNTC = contractData.hasNTC();
+                hasNMC = contractData.hasNMC();
+                ntcDetails = contractData.ntcDetails();
+                nmcDetails = contractData.nmcDetails();
             }
 
             try {
                 BufferedImage avatar = ImageUtils.getUserAvatar(targetUser);
-                ByteArrayOutputStream outputStream = generateModernPlayerCard(username, teamName, formattedDate, ordinal, rank, teamColor, logoPath, avatar, reputationScore, reputationRank, contractYears, contractSalary, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails);
-                e.getHook().sendFiles(FileUpload.fromData(outputStream.toByteArray(), username + "_rank.png")).queue();
+                // Deux demandes identiques en même temps partagent le même rendu
+                String cardKey = RenderService.key(userId, targetUser.getEffectiveAvatarUrl(), username, teamName, formattedDate, ordinal, rank, teamColor.getRGB(), logoPath,
+                        reputationScore, contractYears, contractSalary, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails);
+                Callable<byte[]> renderer = playerCardRenderer(username, teamName, formattedDate, ordinal, rank, teamColor, logoPath, avatar, reputationScore, reputationRank, contractYears, contractSalary, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails);
+                Main.getRenderService().render("rank_card", cardKey, renderer).whenComplete((imageBytes, error) -> {
+                    if (error != null) {
+                        e.getHook().sendMessage("Erreur lors de la génération de la carte de rang : " + error.getMessage()).setEphemeral(true).queue();
+                        return;
+                    }
+                    e.getHook().sendFiles(FileUpload.fromData(imageBytes, username + "_rank.png")).queue();
+                });
             } catch (Exception ex) {
                 e.getHook().sendMessage("Erreur lors de la génération de la carte de rang : " + ex.getMessage()).setEphemeral(true).queue();
             }
@@ -142,11 +143,19 @@ public class ComRank extends Command {
         }
     }
 
+    private Callable<byte[]> playerCardRenderer(String username, String teamName, String draftDate, String roundPick, String rank,
+                                                Color teamColor, String logoPath, BufferedImage avatar, int reputationScore,
+                                                String reputationRank, int contractYears, double contractSalary, String contractType,
+                                                boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails) {
+        return () -> generateModernPlayerCard(username, teamName, draftDate, roundPick, rank, teamColor, logoPath, avatar, reputationScore,
+                reputationRank, contractYears, contractSalary, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails).toByteArray();
+    }
+
     // Image du profil
-    private ByteArrayOutputStream generateModernPlayerCard(String username, String teamName, String draftDate, String roundPick, String rank,
-                                                           Color teamColor, String logoPath, BufferedImage avatar, int reputationScore,
-                                                           String reputationRank, int contractYears, double contractSalary, String contractType,
-                                                           boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails) throws IOException {
+    static ByteArrayOutputStream generateModernPlayerCard(String username, String teamName, String draftDate, String roundPick, String rank,
+                                                          Color teamColor, String logoPath, BufferedImage avatar, int reputationScore,
+                                                          String reputationRank, int contractYears, double contractSalary, String contractType,
+                                                          boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails) throws IOException {
         int width = 800;
         int height = 500;
 
@@ -210,7 +219,7 @@ public class ComRank extends Command {
         return outputStream;
     }
 
-    private void drawHeader(Graphics2D g2d, String username, String rank, int width, BufferedImage avatar, String logoPath) {
+    private static void drawHeader(Graphics2D g2d, String username, String rank, int width, BufferedImage avatar, String logoPath) {
         int logoSize = 80;
         int logoX = 60;
         int logoY = 50;
@@ -273,7 +282,7 @@ public class ComRank extends Command {
         g2d.drawString(rank, textX, rankY);
     }
 
-    private void drawInfoBar(Graphics2D g2d, int width, int y, String teamName, String roundPick) {
+    private static void drawInfoBar(Graphics2D g2d, int width, int y, String teamName, String roundPick) {
         // Light gray background for info bar
         g2d.setColor(new Color(230, 230, 230));
         g2d.fillRect(0, y, width, 40);
@@ -384,7 +393,7 @@ public class ComRank extends Command {
 //        }
 //    }
 
-    private void drawInfosSection(Graphics2D g2d, int columnWidth, int startY, int reputationScore, String draftDate, Color teamColor, String reputationRank) {
+    private static void drawInfosSection(Graphics2D g2d, int columnWidth, int startY, int reputationScore, String draftDate, Color teamColor, String reputationRank) {
         // Barre d'accent latérale et titre - garde la même position Y
         g2d.setColor(Color.GRAY);
         g2d.fillRect(60, startY + 10, 5, 30);
@@ -464,7 +473,7 @@ public class ComRank extends Command {
         }
     }
 
-    private void drawContractSection(Graphics2D g2d, int totalWidth, int columnWidth, int startY,
+    private static void drawContractSection(Graphics2D g2d, int totalWidth, int columnWidth, int startY,
                                      int years, double salary, String contractType,
                                      boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails,
                                      Color teamColor) {
@@ -492,7 +501,7 @@ public class ComRank extends Command {
         g2d.drawLine(leftMargin, firstLineY + 15, totalWidth - 60, firstLineY + 15);
 
         // Salaire du contrat (avec type) - deuxième ligne
-        drawContractLine(g2d, "Salaire", Main.getContractsManager().getSalaryFormat(salary / 1000000.0), leftMargin, firstLineY + lineHeight);
+        drawContractLine(g2d, "Salaire", ContractsManager.getSalaryFormat(salary / 1000000.0), leftMargin, firstLineY + lineHeight);
 
         // Séparateur après la deuxième ligne
         g2d.setColor(new Color(60, 60, 80));
@@ -534,7 +543,7 @@ public class ComRank extends Command {
         }
     }
 
-    private void drawContractLine(Graphics2D g2d, String label, String value, int leftMargin, int y) {
+    private static void drawContractLine(Graphics2D g2d, String label, String value, int leftMargin, int y) {
         g2d.setColor(Color.WHITE);
         g2d.drawString(label, leftMargin + 15, y);
 
@@ -545,7 +554,7 @@ public class ComRank extends Command {
         g2d.drawString(value, rightEdge - valueWidth, y);
     }
 
-    private Color getDarkerColor(Color original) {
+    private static Color getDarkerColor(Color original) {
         float[] hsbValues = Color.RGBtoHSB(original.getRed(), original.getGreen(), original.getBlue(), null);
         hsbValues[2] = Math.max(0, hsbValues[2] * (float) 0.5);
         return Color.getHSBColor(hsbValues[0], hsbValues[1], hsbValues[2]);
@@ -33,7 +33,6 @@ import java.util.stream.Collectors;
 public class ComTeam extends Command {
 
     private final MongoCollection<Document> usersCollection;
-    private final MongoCollection<Document> teamsCollection;
     private final MongoCollection<Document> lineupCollection;
     private final MongoCollection<Document> retiredNumbersCollection;
 
@@ -53,7 +52,6 @@ public class ComTeam extends Command {
         super("team", "Affiche l'alignement d'une équipe");
         MongoDatabase database = Main.getMongoConnection().getDatabase();
         this.usersCollection = database.getCollection("users");
-        this.teamsCollection = database.getCollection("teams");
         this.lineupCollection = database.getCollection("teams_lineup");
         this.retiredNumbersCollection = database.getCollection("retired_numbers");
         Dotenv dotenv = Dotenv.load();
@@ -85,7 +83,7 @@ public class ComTeam extends Command {
             teamName = userDoc.getString("teamName");
         }
 
-        Document teamDoc = teamsCollection.find(Filters.eq("name", teamName)).first();
+        Document teamDoc = Main.getTeamManager().getTeamByName(teamName);
         if (teamDoc == null) {
             e.getHook().sendMessage("Cette équipe n'existe pas.").setEphemeral(true).queue();
             return;
@@ -93,8 +91,14 @@ public class ComTeam extends Command {
 
         try {
             Document lineupDoc = getOrCreateLineup(teamName, Objects.requireNonNull(e.getGuild()).getMembers());
-            byte[] imageBytes = generateLineupImage(teamDoc, lineupDoc);
-            e.getHook().sendFiles(FileUpload.fromData(imageBytes, teamName + "_lineup.png")).queue();
+            Main.getRenderService().render("lineup", null, () -> generateLineupImage(teamDoc, lineupDoc)).whenComplete((imageBytes, error) -> {
+                if (error != null) {
+                    LOGGER.error("Erreur lors de l'exécution de la commande {}: {}", "team", error.getMessage());
+                    e.getHook().sendMessage("Une erreur est survenue lors de la génération de l'alignement.").setEphemeral(true).queue();
+                    return;
+                }
+                e.getHook().sendFiles(FileUpload.fromData(imageBytes, teamName + "_lineup.png")).queue();
+            });
         } catch (Exception ex) {
             LOGGER.error("Erreur lors de l'exécution de la commande {}: {}", "team", ex.getMessage());
             e.getHook().sendMessage("Une erreur est survenue lors de la génération de l'alignement.").setEphemeral(true).queue();
@@ -105,13 +109,10 @@ public class ComTeam extends Command {
     public void onAutoComplete(CommandAutoCompleteInteractionEvent e) {
         if (e.getFocusedOption().getName().equals("equipe")) {
             String query = e.getFocusedOption().getValue().toLowerCase();
-            List<Choice> choices = teamsCollection.find()
-                    .projection(new Document("name", 1))
-                    .limit(25)
-                    .map(doc -> new Choice(doc.getString("name"), doc.getString("name")))
-                    .into(new ArrayList<>())
-                    .stream()
-                    .filter(choice -> choice.getName().toLowerCase().contains(query))
+            List<Choice> choices = Main.getTeamManager().getAllTeams().stream()
+                    .map(doc -> doc.getString("name"))
+                    .filter(name -> name != null && name.toLowerCase().contains(query))
+                    .map(name -> new Choice(name, name))
                     .limit(25)
                     .collect(Collectors.toList());
             e.replyChoices(choices).queue();
@@ -1,30 +1,53 @@
 package ca.lwi.trqcbot.contracts;
 
 import ca.lwi.trqcbot.Main;
+import ca.lwi.trqcbot.metrics.Metrics;
+import ca.lwi.trqcbot.mongo.AsyncMongo;
+import ca.lwi.trqcbot.repositories.ContractOfferRecord;
+import ca.lwi.trqcbot.repositories.ContractOfferRepository;
 import ca.lwi.trqcbot.utils.FontUtils;
 import ca.lwi.trqcbot.utils.ImageUtils;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.Variable;
+import com.mongodb.client.model.WriteModel;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import net.dv8tion.jda.api.utils.FileUpload;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.GeneralPath;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class ContractsManager extends ListenerAdapter {
@@ -41,12 +64,51 @@ public class ContractsManager extends ListenerAdapter {
     private static final int MAX_SALARY = 14000000; // 14M$ maximum
 
     private static final int TWO_WAY_REPUTATION_THRESHOLD = 30;
+    private static final int ENTRY_CONTRACT_BATCH_SIZE = 500;
+
+    // Une case par minute, un tour complet de la roue toutes les ~17 heures
+    private static final long OFFER_WHEEL_TICK_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int OFFER_WHEEL_SIZE = 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContractsManager.class);
 
     private final ScheduledExecutorService scheduler;
+    private final OfferExpiryWheel offerExpiryWheel;
+    private final ContractOfferRepository offerRepository;
 
     public ContractsManager() {
         this.scheduler = Executors.newScheduledThreadPool(1);
         scheduler.scheduleAtFixedRate(this::checkExpiringContracts, 0, 24, TimeUnit.HOURS);
+        this.offerRepository = new ContractOfferRepository(Main.getMongoConnection().getDatabase());
+        this.offerExpiryWheel = new OfferExpiryWheel(OFFER_WHEEL_TICK_MS, OFFER_WHEEL_SIZE, this::expireOffers);
+        loadPendingOffers();
+        offerExpiryWheel.start();
+        Metrics.gauge("contracts.offers.pending", offerExpiryWheel::size);
+    }
+
+    /**
+     * Recharge dans la roue d'expiration toutes les offres encore en attente, pour qu'un redémarrage ne perde aucune échéance.
+     */
+    private void loadPendingOffers() {
+        try {
+            int countBefore = offerExpiryWheel.size();
+            offerRepository.forEachPending(offer -> offerExpiryWheel.schedule(offer.id(), offer.userId(), offer.expiresAt()));
+            LOGGER.info("{} offres de contrat en attente rechargées", offerExpiryWheel.size() - countBefore);
+        } catch (Exception e) {
+            LOGGER.error("Impossible de recharger les offres de contrat en attente: {}", e.getMessage(), e);
+        }
+    }
+
+    public void shutdown() {
+        offerExpiryWheel.shutdown();
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+        }
     }
 
     @Override
@@ -68,7 +130,7 @@ public class ContractsManager extends ListenerAdapter {
         if (existingUser == null) return null;
 
         String teamName = existingUser.getString("teamName");
-        int salary = MIN_ENTRY_SALARY + new Random().nextInt(MAX_ENTRY_SALARY - MIN_ENTRY_SALARY + 1);
+        int salary = randomEntrySalary();
         Date joinDate = Date.from(existingUser.getDate("joinDate").toInstant());
 
         // Générer un contrat d'entrée standard (3 ans, 2 volets)
@@ -86,6 +148,36 @@ public class ContractsManager extends ListenerAdapter {
         );
     }
 
+    /**
+     * Génère les contrats d'entrée de plusieurs utilisateurs en une seule écriture groupée.
+     * Les utilisateurs qui ont obtenu un contrat actif entre-temps ne sont pas modifiés.
+     * @param users Documents utilisateurs contenant au moins userId, teamName et joinDate
+     * @return Nombre de contrats créés
+     */
+    public int generateEntryContracts(List<Document> users) {
+        List<WriteModel<Document>> writes = new ArrayList<>(users.size());
+        for (Document user : users) {
+            String userId = user.getString("userId");
+            Document contract = buildContract(userId, user.getString("teamName"), randomEntrySalary(),
+                    ENTRY_CONTRACT_DURATION_DAYS, "2 volets", false, false, "", "", user.getDate("joinDate"));
+            writes.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("userId", userId), Filters.ne("contract.status", "active")),
+                    Updates.set("contract", toContractInfo(contract))));
+        }
+
+        int created = 0;
+        MongoCollection<Document> usersCollection = Main.getMongoConnection().getDatabase().getCollection("users");
+        for (int from = 0; from < writes.size(); from += ENTRY_CONTRACT_BATCH_SIZE) {
+            List<WriteModel<Document>> batch = writes.subList(from, Math.min(from + ENTRY_CONTRACT_BATCH_SIZE, writes.size()));
+            created += usersCollection.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+        return created;
+    }
+
+    private static int randomEntrySalary() {
+        return MIN_ENTRY_SALARY + ThreadLocalRandom.current().nextInt(MAX_ENTRY_SALARY - MIN_ENTRY_SALARY + 1);
+    }
+
     /**
      * Surcharge de la méthode generateContract qui utilise la date actuelle comme date de début
      */
@@ -106,6 +198,16 @@ public class ContractsManager extends ListenerAdapter {
      * @return Document représentant le contrat
      */
     public Document generateContract(String userId, String teamName, int salary, int years, String contractType, boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails, Date startDate) {
+        Document contract = buildContract(userId, teamName, salary, years, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails, startDate);
+        updateUserContract(userId, contract);
+        updateUserTeam(userId, teamName);
+        return contract;
+    }
+
+    /**
+     * Construit le document d'un contrat sans l'enregistrer.
+     */
+    private Document buildContract(String userId, String teamName, int salary, int years, String contractType, boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails, Date startDate) {
         int adjustedYears = Math.max(1, Math.min(years, MAX_CONTRACT_YEARS));
         int adjustedSalary = Math.max(MIN_SALARY, Math.min(salary, MAX_SALARY));
         Date contractStartDate = startDate != null ? startDate : new Date();
@@ -117,7 +219,7 @@ public class ContractsManager extends ListenerAdapter {
 
         Date expiryDate = calendar.getTime();
 
-        Document contract = new Document()
+        return new Document()
                 .append("_id", new ObjectId())
                 .append("userId", userId)
                 .append("teamName", teamName)
@@ -131,10 +233,6 @@ public class ContractsManager extends ListenerAdapter {
                 .append("ntcDetails", ntcDetails)
                 .append("nmcDetails", nmcDetails)
                 .append("status", "active");
-
-        updateUserContract(userId, contract);
-        updateUserTeam(userId, teamName);
-        return contract;
     }
 
     /**
@@ -143,6 +241,16 @@ public class ContractsManager extends ListenerAdapter {
      * @param contract Document du contrat
      */
     private void updateUserContract(String userId, Document contract) {
+        Main.getMongoConnection().getDatabase().getCollection("users").updateOne(
+                new Document("userId", userId),
+                new Document("$set", new Document("contract", toContractInfo(contract)))
+        );
+    }
+
+    /**
+     * @return Le sous-document "contract" enregistré sur l'utilisateur
+     */
+    private Document toContractInfo(Document contract) {
         Document contractInfo = new Document()
                 .append("teamName", contract.getString("teamName"))
                 .append("salary", contract.getInteger("salary"))
@@ -164,112 +272,176 @@ public class ContractsManager extends ListenerAdapter {
         if (contract.containsKey("nmcDetails")) {
             contractInfo.append("nmcDetails", contract.getString("nmcDetails"));
         }
-
-        Main.getMongoConnection().getDatabase().getCollection("users").updateOne(
-                new Document("userId", userId),
-                new Document("$set", new Document("contract", contractInfo))
-        );
+        return contractInfo;
     }
 
     /**
      * Vérifie les contrats qui expirent et envoie des notifications.
+     * Une seule agrégation retourne les contrats échus dont l'utilisateur n'a pas d'offres en attente.
+     * Les offres de tous ces utilisateurs sont enregistrées en une écriture groupée ; seuls les contrats
+     * dont les offres ont bien été enregistrées passent à expired, en une seconde écriture groupée.
+     * Les messages privés sont envoyés ensuite, sans bloquer sur Discord.
      */
     public void checkExpiringContracts() {
-        Document query = new Document("contract.status", "active").append("contract.expiryDate", new Document("$lte", new Date()));
-        for (Document user : Main.getMongoConnection().getDatabase().getCollection("users").find(query)) {
-            String userId = user.getString("userId");
-            User discordUser = Main.getJda().retrieveUserById(userId).complete();
-            if (discordUser != null) {
-                Document pendingOffers = Main.getMongoConnection().getDatabase().getCollection("contract_offers")
-                        .find(new Document("userId", userId).append("status", "pending"))
-                        .first();
-                if (pendingOffers == null) {
-                    sendContractOffers(discordUser);
-                    Main.getMongoConnection().getDatabase().getCollection("users")
-                            .updateOne(
-                                    new Document("_id", user.getObjectId("_id")),
-                                    new Document("$set", new Document("contract.status", "expired"))
-                            );
+        JDA jda = Main.getJda();
+        if (jda == null) return;
+        long start = System.currentTimeMillis();
+        try {
+            MongoCollection<Document> users = Main.getMongoConnection().getDatabase().getCollection("users");
+            List<Document> dueContracts = users.aggregate(Arrays.asList(
+                    Aggregates.match(Filters.and(Filters.eq("contract.status", "active"), Filters.lte("contract.expiryDate", new Date()))),
+                    Aggregates.project(Projections.include("userId", "teamName", "reputation.reputationScore")),
+                    Aggregates.lookup("contract_offers",
+                            Collections.singletonList(new Variable<>("userId", "$userId")),
+                            Arrays.asList(
+                                    Aggregates.match(Filters.and(
+                                            Filters.expr(new Document("$eq", Arrays.asList("$userId", "$$userId"))),
+                                            Filters.eq("status", "pending"))),
+                                    Aggregates.limit(1),
+                                    Aggregates.project(Projections.include("_id"))),
+                            "pendingOffers"),
+                    Aggregates.match(Filters.size("pendingOffers", 0))
+            )).into(new ArrayList<>());
+
+            List<PreparedOffers> prepared = new ArrayList<>(dueContracts.size());
+            for (Document due : dueContracts) {
+                String userId = due.getString("userId");
+                try {
+                    Document reputation = due.get("reputation", Document.class);
+                    int reputationScore = reputation != null ? reputation.getInteger("reputationScore", 0) : 0;
+                    List<ContractOffer> offers = buildContractOffers(due.getString("teamName"), reputationScore);
+                    prepared.add(new PreparedOffers(due.getObjectId("_id"), userId, offers, toOffersDocument(userId, offers)));
+                } catch (Exception e) {
+                    LOGGER.warn("Impossible de préparer les offres de {}: {}", userId, e.getMessage());
                 }
             }
+            List<PreparedOffers> stored = storeContractOffers(prepared);
+
+            List<WriteModel<Document>> writes = new ArrayList<>(stored.size());
+            for (PreparedOffers offers : stored) {
+                writes.add(new UpdateOneModel<>(
+                        Filters.and(Filters.eq("_id", offers.userDocumentId()), Filters.eq("contract.status", "active")),
+                        Updates.set("contract.status", "expired")));
+            }
+            if (!writes.isEmpty()) users.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+
+            for (PreparedOffers offers : stored) {
+                jda.retrieveUserById(offers.userId()).queue(
+                        user -> deliverContractOffers(user, offers.offers()),
+                        error -> LOGGER.warn("Impossible d'envoyer les offres de contrat à {}: {}", offers.userId(), error.getMessage()));
+            }
+
+            Metrics.counter("contracts.expiring.rows").add(dueContracts.size());
+            LOGGER.info("{} contrats expirés traités ({} échecs)", stored.size(), dueContracts.size() - stored.size());
+        } catch (Exception e) {
+            // Ne pas interrompre la planification quotidienne
+            LOGGER.error("Erreur lors de la vérification des contrats expirés: {}", e.getMessage(), e);
+        } finally {
+            Metrics.histogram("contracts.expiring.job").recordMillis(System.currentTimeMillis() - start);
         }
     }
 
+    /**
+     * Offres préparées pour un utilisateur, pas encore enregistrées.
+     * @param userDocumentId _id du document utilisateur
+     * @param userId ID de l'utilisateur
+     * @param offers Offres proposées
+     * @param document Document contract_offers à insérer
+     */
+    private record PreparedOffers(ObjectId userDocumentId, String userId, List<ContractOffer> offers, Document document) {}
+
     /**
      * Envoie des offres de contrat à un utilisateur.
+     * Les offres sont enregistrées avant l'envoi du message privé, qui se fait en arrière-plan.
      * @param user L'utilisateur à qui envoyer les offres
+     * @return Vrai si les offres ont été enregistrées
      */
-    public void sendContractOffers(User user) {
+    public boolean sendContractOffers(User user) {
+        List<ContractOffer> offers;
         try {
             // Obtenir les données de l'utilisateur
             Document userData = Main.getRankManager().getUserData(user.getId());
             if (userData == null) {
                 System.err.println("Données utilisateur non trouvées pour l'ID: " + user.getId());
-                return;
+                return false;
             }
 
-            // Récupérer l'équipe actuelle
-            String currentTeam = userData.getString("teamName");
-
-            // Obtenir deux équipes aléatoires (différentes de l'équipe actuelle)
-            List<Document> randomTeams = getRandomTeams(Collections.singletonList(currentTeam));
-
-            // Récupérer l'équipe actuelle depuis la DB
-            Document currentTeamData = Main.getTeamManager().getTeamByName(currentTeam);
-
-            // Préparer les 3 offres (équipe actuelle + 2 équipes aléatoires)
-            List<ContractOffer> offers = new ArrayList<>();
-
             // Calculer le salaire en fonction de la réputation du joueur
             Document reputation = (Document) userData.getOrDefault("reputation", new Document("reputationScore", 0));
-            int reputationScore = reputation.getInteger("reputationScore", 0);
+            offers = buildContractOffers(userData.getString("teamName"), reputation.getInteger("reputationScore", 0));
 
-            // Ajouter l'offre de l'équipe actuelle
-            if (currentTeamData != null) {
-                offers.add(createOfferForTeam(currentTeamData, reputationScore, true));
+            // Stocker les offres dans la base de données pour référence ultérieure
+            if (storeContractOffers(List.of(new PreparedOffers(userData.getObjectId("_id"), user.getId(), offers, toOffersDocument(user.getId(), offers)))).isEmpty()) {
+                return false;
             }
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'envoi des offres de contrat à l'utilisateur " + user.getId());
+            e.printStackTrace();
+            return false;
+        }
+        deliverContractOffers(user, offers);
+        return true;
+    }
 
-            // Ajouter les offres des équipes aléatoires
-            for (Document team : randomTeams) {
-                offers.add(createOfferForTeam(team, reputationScore, false));
-            }
+    /**
+     * Prépare les 3 offres d'un joueur : équipe actuelle + 2 équipes aléatoires.
+     * @param currentTeam Équipe actuelle du joueur
+     * @param reputationScore Score de réputation du joueur
+     * @return Les offres, dans un ordre aléatoire
+     */
+    private List<ContractOffer> buildContractOffers(String currentTeam, int reputationScore) {
+        // Obtenir deux équipes aléatoires (différentes de l'équipe actuelle)
+        List<Document> randomTeams = getRandomTeams(Collections.singletonList(currentTeam));
 
-            Collections.shuffle(offers);
+        // Récupérer l'équipe actuelle depuis le cache
+        Document currentTeamData = Main.getTeamManager().getTeamByName(currentTeam);
 
-            // Générer l'image des offres
-            BufferedImage contractImage = generateContractOffersImage(offers);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(contractImage, "png", outputStream);
+        List<ContractOffer> offers = new ArrayList<>();
 
-            // Créer les boutons pour les offres
-            List<Button> buttons = new ArrayList<>();
-            for (ContractOffer offer : offers) {
-                buttons.add(Button.primary("contract_" + offer.teamName(), "Signer avec " + offer.teamName()));
-            }
-            buttons.add(Button.danger("contract_decline", "Ne pas signer"));
-
-            // Stocker les offres en cache ou dans la base de données pour référence ultérieure
-            storeContractOffers(user.getId(), offers);
-
-            // Envoyer le message privé avec l'image et les boutons
-            user.openPrivateChannel().queue(channel -> {
-                channel.sendMessage("📬 Vous pouvez signer un nouveau contrat !")
-                        .addFiles(FileUpload.fromData(outputStream.toByteArray(), "contract_offers.png"))
-                        .addActionRow(buttons.subList(0, Math.min(buttons.size() - 1, 3)).toArray(new Button[0]))
-                        .addActionRow(buttons.getLast())
-                        .queue();
-                channel.sendMessage("⏳ Vous avez 3 jours pour signer un contrat. Passé ce délai, les offres seront retirées " +
-                                "et de nouvelles propositions moins avantageuses vous seront faites.")
-                        .queue();
-            });
+        // Ajouter l'offre de l'équipe actuelle
+        if (currentTeamData != null) {
+            offers.add(createOfferForTeam(currentTeamData, reputationScore, true));
+        }
 
-            // Programmer une vérification dans 3 jours pour voir si l'utilisateur a signé
-            scheduleContractFollowUp(user.getId());
+        // Ajouter les offres des équipes aléatoires
+        for (Document team : randomTeams) {
+            offers.add(createOfferForTeam(team, reputationScore, false));
+        }
 
-        } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi des offres de contrat à l'utilisateur " + user.getId());
-            e.printStackTrace();
+        if (offers.isEmpty()) throw new IllegalStateException("Aucune équipe disponible pour des offres de contrat");
+        Collections.shuffle(offers);
+        return offers;
+    }
+
+    /**
+     * Génère l'image des offres et l'envoie en message privé avec les boutons de signature.
+     * Les offres sont déjà enregistrées : un échec est seulement journalisé (l'utilisateur les retrouve avec /contrat).
+     * @param user L'utilisateur à qui envoyer les offres
+     * @param offers Les offres enregistrées
+     */
+    private void deliverContractOffers(User user, List<ContractOffer> offers) {
+        // Créer les boutons pour les offres
+        List<Button> buttons = new ArrayList<>();
+        for (ContractOffer offer : offers) {
+            buttons.add(Button.primary("contract_" + offer.teamName(), "Signer avec " + offer.teamName()));
         }
+        buttons.add(Button.danger("contract_decline", "Ne pas signer"));
+
+        Main.getRenderService().render("contract_offers", null, () -> ImageUtils.toPng(generateContractOffersImage(offers, Main.getTeamManager()::getTeamByName)))
+                .thenAccept(imageBytes -> user.openPrivateChannel().queue(channel -> {
+                    channel.sendMessage("📬 Vous pouvez signer un nouveau contrat !")
+                            .addFiles(FileUpload.fromData(imageBytes, "contract_offers.png"))
+                            .addActionRow(buttons.subList(0, Math.min(buttons.size() - 1, 3)).toArray(new Button[0]))
+                            .addActionRow(buttons.getLast())
+                            .queue();
+                    channel.sendMessage("⏳ Vous avez 3 jours pour signer un contrat. Passé ce délai, les offres seront retirées " +
+                                    "et de nouvelles propositions moins avantageuses vous seront faites.")
+                            .queue();
+                }, error -> LOGGER.warn("Impossible d'ouvrir un message privé avec {}: {}", user.getId(), error.getMessage())))
+                .exceptionally(error -> {
+                    LOGGER.error("Erreur lors de la génération des offres de contrat de {}: {}", user.getId(), error.getMessage(), error);
+                    return null;
+                });
     }
 
     /**
@@ -394,9 +566,10 @@ public class ContractsManager extends ListenerAdapter {
     /**
      * Génère une image d'offres de contrat similaire à celle de l'exemple.
      * @param offers Liste des offres de contrat
+     * @param teamLookup Recherche des données d'une équipe par nom (couleur, logo)
      * @return Une image BufferedImage des offres
      */
-    private BufferedImage generateContractOffersImage(List<ContractOffer> offers) {
+    static BufferedImage generateContractOffersImage(List<ContractOffer> offers, Function<String, Document> teamLookup) {
         int width = 1200;
         int height = 520;
         int panelWidth = width / offers.size();
@@ -424,7 +597,7 @@ public class ContractsManager extends ListenerAdapter {
             g2d.fillRect(x, padding, panelContentWidth, height - (2 * padding));
 
             // Zone du haut avec la couleur de l'équipe et logo
-            Document teamData = Main.getTeamManager().getTeamByName(offer.teamName());
+            Document teamData = teamLookup.apply(offer.teamName());
             Color teamColor = Color.GRAY;
             if (teamData != null && teamData.containsKey("color")) {
                 String colorHex = teamData.getString("color");
@@ -587,18 +760,18 @@ public class ContractsManager extends ListenerAdapter {
     }
 
     // Méthode pour assombrir une couleur avec un facteur personnalisable
-    private Color getDarkerColor(Color original) {
+    private static Color getDarkerColor(Color original) {
         float[] hsbValues = Color.RGBtoHSB(original.getRed(), original.getGreen(), original.getBlue(), null);
         hsbValues[2] = Math.max(0, hsbValues[2] * (float) 0.3); // Facteur ajustable
         return Color.getHSBColor(hsbValues[0], hsbValues[1], hsbValues[2]);
     }
 
     /**
-     * Stocke les offres de contrat pour une référence ultérieure.
+     * Construit le document contract_offers des offres d'un utilisateur (échéance dans 3 jours).
      * @param userId ID de l'utilisateur
      * @param offers Liste des offres
      */
-    private void storeContractOffers(String userId, List<ContractOffer> offers) {
+    private Document toOffersDocument(String userId, List<ContractOffer> offers) {
         // Convertir les offres en documents
         List<Document> offerDocs = offers.stream()
                 .map(offer -> new Document()
@@ -616,54 +789,75 @@ public class ContractsManager extends ListenerAdapter {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_MONTH, CONTRACT_RESPONSE_DEADLINE_DAYS);
 
-        // Document des offres actives
-        Document offersDoc = new Document()
+        return new Document()
+                .append("_id", new ObjectId())
                 .append("userId", userId)
                 .append("offers", offerDocs)
                 .append("createdAt", new Date())
                 .append("expiresAt", calendar.getTime())
                 .append("status", "pending");
+    }
 
-        // Supprimer les anciennes offres en attente pour cet utilisateur
-        Main.getMongoConnection().getDatabase().getCollection("contract_offers").deleteMany(
-                new Document("userId", userId).append("status", "pending"));
+    /**
+     * Enregistre les offres de plusieurs utilisateurs en un bulkWrite non ordonné : pour chacun, les anciennes offres
+     * en attente sont supprimées puis les nouvelles insérées. L'expiration des offres enregistrées est programmée.
+     * @param prepared Offres à enregistrer
+     * @return Les offres effectivement insérées
+     */
+    private List<PreparedOffers> storeContractOffers(List<PreparedOffers> prepared) {
+        if (prepared.isEmpty()) return prepared;
+        List<WriteModel<Document>> writes = new ArrayList<>(prepared.size() * 2);
+        for (PreparedOffers offers : prepared) {
+            writes.add(new DeleteManyModel<>(Filters.and(Filters.eq("userId", offers.userId()), Filters.eq("status", "pending"))));
+            writes.add(new InsertOneModel<>(offers.document()));
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        try {
+            Main.getMongoConnection().getDatabase().getCollection("contract_offers").bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Deux écritures par utilisateur : seule l'insertion (index impair) décide si les offres existent
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getIndex() % 2 == 1) failed.add(error.getIndex() / 2);
+            }
+            LOGGER.error("Erreur lors de l'enregistrement des offres de contrat ({}/{} utilisateurs): {}", failed.size(), prepared.size(), e.getMessage());
+        }
 
-        // Insérer les nouvelles offres
-        Main.getMongoConnection().getDatabase().getCollection("contract_offers").insertOne(offersDoc);
+        List<PreparedOffers> stored = new ArrayList<>(prepared.size() - failed.size());
+        for (int i = 0; i < prepared.size(); i++) {
+            if (failed.contains(i)) continue;
+            PreparedOffers offers = prepared.get(i);
+            // Remplace l'échéance des anciennes offres
+            offerExpiryWheel.schedule(offers.document().getObjectId("_id"), offers.userId(), offers.document().getDate("expiresAt"));
+            stored.add(offers);
+        }
+        return stored;
     }
 
     /**
-     * Programme une vérification ultérieure pour voir si l'utilisateur a signé un contrat.
+     * Expire des offres arrivées à échéance. Le passage pending → expired est atomique :
+     * des offres signées, refusées ou remplacées entre-temps ne sont pas touchées.
+     * @param offerId ID du document d'offres
      * @param userId ID de l'utilisateur
      */
-    private void scheduleContractFollowUp(String userId) {
-        scheduler.schedule(() -> {
-            // Vérifier si l'utilisateur a signé un contrat
-            Document query = new Document("userId", userId)
-                    .append("status", "pending");
-
-            Document pendingOffers = Main.getMongoConnection().getDatabase().getCollection("contract_offers").find(query).first();
-
-            if (pendingOffers != null) {
-                // L'utilisateur n'a pas signé, devenir agent libre
-                makeUserFreeAgent(userId);
-
-                // Marquer les offres comme expirées
-                Main.getMongoConnection().getDatabase().getCollection("contract_offers").updateOne(
-                        new Document("_id", pendingOffers.getObjectId("_id")),
-                        new Document("$set", new Document("status", "expired")));
-
-                // Notifier l'utilisateur
-                User user = Main.getJda().retrieveUserById(userId).complete();
-                if (user != null) {
-                    user.openPrivateChannel().queue(channel -> {
-                        channel.sendMessage("⚠️ Vos offres de contrat ont expiré. Vous êtes maintenant un agent libre. " +
-                                        "Vous pouvez demander un nouveau contrat à tout moment via la commande `/contrat`.")
-                                .queue();
-                    });
-                }
-            }
-        }, CONTRACT_RESPONSE_DEADLINE_DAYS, TimeUnit.DAYS);
+    private void expireOffers(ObjectId offerId, String userId) {
+        Document expired = Main.getMongoConnection().getDatabase().getCollection("contract_offers").findOneAndUpdate(
+                Filters.and(Filters.eq("_id", offerId), Filters.eq("status", "pending")),
+                Updates.set("status", "expired"));
+        if (expired == null) return;
+        Metrics.counter("contracts.offers.expired").increment();
+
+        // L'utilisateur n'a pas signé, devenir agent libre
+        makeUserFreeAgent(userId);
+
+        // Notifier l'utilisateur
+        JDA jda = Main.getJda();
+        if (jda == null) return;
+        jda.retrieveUserById(userId)
+                .flatMap(User::openPrivateChannel)
+                .flatMap(channel -> channel.sendMessage("⚠️ Vos offres de contrat ont expiré. Vous êtes maintenant un agent libre. " +
+                        "Vous pouvez demander un nouveau contrat à tout moment via la commande `/contrat`."))
+                .queue(null, error -> LOGGER.warn("Impossible de notifier {} de l'expiration de ses offres: {}", userId, error.getMessage()));
     }
 
     /**
@@ -690,17 +884,24 @@ public class ContractsManager extends ListenerAdapter {
         String action = buttonData[0];
         String value = buttonData[1];
         if (action.equals("contract")) {
-            Document offersDoc = Main.getMongoConnection().getDatabase().getCollection("contract_offers").find(new Document("userId", e.getUser().getId()).append("status", "pending")).first();
-            if (offersDoc == null) {
-                e.reply("Aucune offre de contrat en attente n'a été trouvée.").setEphemeral(true).queue();
-                return;
-            }
-            if (value.equals("decline")) {
-                makeUserFreeAgent(e.getUser().getId());
-                e.reply("Vous avez refusé toutes les offres. Vous êtes maintenant un agent libre.").queue();
-            } else {
-                signContractWithTeam(e.getUser().getId(), value, e, offersDoc);
-            }
+            String userId = e.getUser().getId();
+            AsyncMongo async = Main.getMongoConnection().getAsync();
+            // La recherche des offres se fait pendant l'accusé de réception de l'interaction
+            CompletableFuture<ContractOfferRecord> offersLookup = async.supply(() -> offerRepository.findPending(userId));
+            e.deferReply().submit().thenCombine(offersLookup, (hook, offersDoc) -> {
+                if (offersDoc == null) {
+                    return hook.sendMessage("Aucune offre de contrat en attente n'a été trouvée.").submit();
+                }
+                if (value.equals("decline")) {
+                    return async.run(() -> makeUserFreeAgent(userId))
+                            .thenCompose(v -> hook.sendMessage("Vous avez refusé toutes les offres. Vous êtes maintenant un agent libre.").submit());
+                }
+                return signContractWithTeam(userId, value, hook, offersDoc);
+            }).thenCompose(Function.identity()).whenComplete((message, error) -> {
+                if (error == null) return;
+                LOGGER.error("Erreur lors du traitement du contrat de {}: {}", userId, error.getMessage(), error);
+                e.getHook().sendMessage("Une erreur est survenue lors du traitement de votre contrat.").queue();
+            });
         }
     }
 
@@ -708,70 +909,55 @@ public class ContractsManager extends ListenerAdapter {
      * Signe un contrat avec une équipe spécifique.
      * @param userId ID de l'utilisateur
      * @param teamName Nom de l'équipe
-     * @param e Événement d'interaction pour répondre
+     * @param hook Réponse différée de l'interaction
+     * @return Un futur complété une fois la réponse envoyée
      */
-    private void signContractWithTeam(String userId, String teamName, ButtonInteractionEvent e, Document offersDoc) {
-        List<Document> offers = offersDoc.getList("offers", Document.class);
-        Document selectedOffer = null;
-        for (Document offer : offers) {
-            if (teamName.equals(offer.getString("teamName"))) {
-                selectedOffer = offer;
-                break;
-            }
-        }
+    private CompletableFuture<Message> signContractWithTeam(String userId, String teamName, InteractionHook hook, ContractOfferRecord offersDoc) {
+        ContractOfferRecord.Offer selectedOffer = offersDoc.offerFor(teamName);
         if (selectedOffer == null) {
-            e.reply("Cette offre n'est plus disponible.").setEphemeral(true).queue();
-            return;
+            return hook.sendMessage("Cette offre n'est plus disponible.").submit();
         }
 
         // Créer le nouveau contrat
-        int years = selectedOffer.getInteger("years");
-        double salaryInMillions = selectedOffer.getDouble("salary");
-        String contractType = selectedOffer.getString("contractType");
-        boolean hasNTC = selectedOffer.getBoolean("hasNTC", false);
-        boolean hasNMC = selectedOffer.getBoolean("hasNMC", false);
-        String ntcDetails = selectedOffer.getString("ntcDetails") != null ? selectedOffer.getString("ntcDetails") : "";
-        String nmcDetails = selectedOffer.getString("nmcDetails") != null ? selectedOffer.getString("nmcDetails") : "";
-
-        // Créer le contrat avec la fonction générique
-        Document contract = generateContract(userId, teamName, (int)(salaryInMillions * 1000000), years, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails);
-
-        // Marquer toutes les offres comme acceptées pour cet utilisateur
-        Main.getMongoConnection().getDatabase().getCollection("contract_offers").updateMany(
-                new Document("userId", userId).append("status", "pending"),
-                new Document("$set", new Document("status", "accepted")
-                        .append("acceptedTeam", teamName)));
-
-        updateUserContract(userId, contract);
-        updateUserTeam(userId, teamName);
-
-        try {
-            // Générer l'image de confirmation de signature
-            BufferedImage signedImage = generateContractSignedImage(
-                    teamName,
-                    years,
-                    salaryInMillions,
-                    contractType,
-                    hasNTC,
-                    hasNMC,
-                    ntcDetails,
-                    nmcDetails,
-                    contract.getDate("expiryDate")
-            );
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(signedImage, "png", outputStream);
-
-            // Répondre avec l'image et un message court
-            e.reply("🎉 Félicitations ! Votre contrat a été signé.")
-                    .addFiles(FileUpload.fromData(outputStream.toByteArray(), "contract_signed.png"))
-                    .queue();
-        } catch (Exception ex) {
+        int years = selectedOffer.years();
+        double salaryInMillions = selectedOffer.salary();
+        String contractType = selectedOffer.contractType();
+        boolean hasNTC = selectedOffer.hasNTC();
+        boolean hasNMC = selectedOffer.hasNMC();
+        String ntcDetails = selectedOffer.ntcDetails();
+        String nmcDetails = selectedOffer.nmcDetails();
+
+        // Créer le contrat avec la fonction générique et marquer toutes les offres comme acceptées, hors des threads de JDA
+        return Main.getMongoConnection().getAsync().supply(() -> {
+            Document contract = generateContract(userId, teamName, (int) (salaryInMillions * 1000000), years, contractType, hasNTC, hasNMC, ntcDetails, nmcDetails);
+            Main.getMongoConnection().getDatabase().getCollection("contract_offers").updateMany(
+                    new Document("userId", userId).append("status", "pending"),
+                    new Document("$set", new Document("status", "accepted")
+                            .append("acceptedTeam", teamName)));
+            offerExpiryWheel.cancel(userId);
+            return contract.getDate("expiryDate");
+        }).thenCompose(expiryDate -> Main.getRenderService().render("contract_signed", null, () -> ImageUtils.toPng(generateContractSignedImage(
+                teamName,
+                years,
+                salaryInMillions,
+                contractType,
+                hasNTC,
+                hasNMC,
+                ntcDetails,
+                nmcDetails,
+                expiryDate
+        ))).handle((imageBytes, error) -> {
+            if (error == null) {
+                // Répondre avec l'image et un message court
+                return hook.sendMessage("🎉 Félicitations ! Votre contrat a été signé.")
+                        .addFiles(FileUpload.fromData(imageBytes, "contract_signed.png"))
+                        .submit();
+            }
             SimpleDateFormat dateFormat = new SimpleDateFormat("d MMMM yyyy", Locale.CANADA_FRENCH);
-            e.reply("🎉 Félicitations ! Vous avez signé un contrat de " + years + " an" + (years > 1 ? "s" : "") +
+            return hook.sendMessage("🎉 Félicitations ! Vous avez signé un contrat de " + years + " an" + (years > 1 ? "s" : "") +
                     " avec " + teamName + " pour un salaire annuel de " + getSalaryFormat(salaryInMillions) + "." +
-                    "\nLe contrat expire le " + dateFormat.format(contract.getDate("expiryDate")) + ".").queue();
-        }
+                    "\nLe contrat expire le " + dateFormat.format(expiryDate) + ".").submit();
+        }).thenCompose(Function.identity()));
     }
 
     /**
@@ -1105,8 +1291,7 @@ public class ContractsManager extends ListenerAdapter {
      * @return Liste de documents d'équipes
      */
     private List<Document> getRandomTeams(List<String> exclude) {
-        List<Document> allTeams = new ArrayList<>();
-        Main.getMongoConnection().getDatabase().getCollection("teams").find().into(allTeams);
+        List<Document> allTeams = Main.getTeamManager().getAllTeams();
         List<Document> availableTeams = allTeams.stream().filter(team -> !exclude.contains(team.getString("name"))).collect(Collectors.toList());
         if (availableTeams.size() <= 2) return availableTeams;
         List<Document> selectedTeams = new ArrayList<>();
@@ -1118,7 +1303,7 @@ public class ContractsManager extends ListenerAdapter {
         return selectedTeams;
     }
 
-    public String getSalaryFormat(double salary) {
+    public static String getSalaryFormat(double salary) {
         return String.format("%.2fM $", salary);
     }
 
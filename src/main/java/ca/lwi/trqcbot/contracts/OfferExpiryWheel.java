@@ -0,0 +1,159 @@
+package ca.lwi.trqcbot.contracts;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Roue temporelle hachée pour l'expiration des offres de contrat.
+ * Chaque offre est rangée dans la case correspondant à son échéance, avec le nombre de tours restants :
+ * un tick ne parcourt qu'une seule case, peu importe le nombre d'offres en attente.
+ * La roue n'est qu'un index en mémoire : la source de vérité reste le champ expiresAt de contract_offers,
+ * rechargé au démarrage. Un utilisateur n'a qu'une échéance à la fois : en programmer une nouvelle
+ * (offres remplacées) ou l'annuler (offres signées) retire la précédente du compte des offres en attente.
+ */
+public class OfferExpiryWheel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfferExpiryWheel.class);
+
+    private final long tickMs;
+    private final int mask;
+    private final List<Queue<Timeout>> slots;
+    // Ajouts faits depuis d'autres threads, transférés dans les cases au début de chaque tick
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    // Échéance en cours par utilisateur ; les échéances remplacées ou annulées restent dans leur case jusqu'à leur passage
+    private final Map<String, Timeout> byUser = new ConcurrentHashMap<>();
+    private final BiConsumer<ObjectId, String> onExpire;
+    private final ScheduledExecutorService ticker;
+    private long startTime;
+    private long tick;
+
+    /**
+     * @param tickMs Durée d'une case
+     * @param wheelSize Nombre de cases (arrondi à la puissance de 2 supérieure)
+     * @param onExpire Appelé avec l'ID de l'offre et l'ID de l'utilisateur à l'échéance
+     */
+    public OfferExpiryWheel(long tickMs, int wheelSize, BiConsumer<ObjectId, String> onExpire) {
+        int normalized = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = normalized - 1;
+        this.slots = new ArrayList<>(normalized);
+        for (int i = 0; i < normalized; i++) slots.add(new ArrayDeque<>());
+        this.onExpire = onExpire;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offer-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        startTime = System.currentTimeMillis();
+        ticker.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Programme l'expiration d'une offre, en remplaçant l'échéance précédente de l'utilisateur.
+     * Une échéance passée expire au prochain tick.
+     */
+    public void schedule(ObjectId offerId, String userId, Date expiresAt) {
+        long deadline = expiresAt != null ? expiresAt.getTime() : System.currentTimeMillis();
+        Timeout timeout = new Timeout(offerId, userId, deadline);
+        Timeout previous = byUser.put(userId, timeout);
+        if (previous != null) previous.cancelled = true;
+        pending.add(timeout);
+    }
+
+    /**
+     * Annule l'échéance en cours d'un utilisateur (ex: offres signées).
+     * @param userId ID de l'utilisateur
+     */
+    public void cancel(String userId) {
+        Timeout previous = byUser.remove(userId);
+        if (previous != null) previous.cancelled = true;
+    }
+
+    /**
+     * @return Le nombre d'offres en attente d'expiration
+     */
+    public int size() {
+        return byUser.size();
+    }
+
+    private void advance() {
+        try {
+            transferPending();
+            Iterator<Timeout> it = slots.get((int) (tick & mask)).iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.cancelled) {
+                    it.remove();
+                    continue;
+                }
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                    continue;
+                }
+                it.remove();
+                if (!byUser.remove(timeout.userId, timeout)) continue;
+                try {
+                    onExpire.accept(timeout.offerId, timeout.userId);
+                } catch (Exception e) {
+                    LOGGER.error("Erreur lors de l'expiration de l'offre {}: {}", timeout.offerId, e.getMessage(), e);
+                }
+            }
+            tick++;
+        } catch (Exception e) {
+            // Ne jamais laisser une exception arrêter scheduleAtFixedRate
+            LOGGER.error("Erreur dans la roue d'expiration des offres: {}", e.getMessage(), e);
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            long deadlineTick = Math.max(tick, (timeout.deadline - startTime + tickMs - 1) / tickMs - 1);
+            timeout.remainingRounds = (deadlineTick - tick) / slots.size();
+            slots.get((int) (deadlineTick & mask)).add(timeout);
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdown();
+        try {
+            if (!ticker.awaitTermination(5, TimeUnit.SECONDS)) {
+                ticker.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private static final class Timeout {
+        private final ObjectId offerId;
+        private final String userId;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(ObjectId offerId, String userId, long deadline) {
+            this.offerId = offerId;
+            this.userId = userId;
+            this.deadline = deadline;
+        }
+    }
+}
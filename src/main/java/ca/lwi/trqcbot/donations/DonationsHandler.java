@@ -18,6 +18,7 @@ import java.awt.*;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class DonationsHandler {
@@ -33,8 +34,8 @@ public class DonationsHandler {
     private static final Color TOP_TEN_COLOR = new Color(0, 120, 215); // Bleu pour le top 10
 
     // Stockage des pages de pagination par utilisateur
-    private static final Map<String, Integer> userPagination = new HashMap<>();
-    private static final Map<String, Long> paginationTimestamps = new HashMap<>();
+    private static final Map<String, Integer> userPagination = new ConcurrentHashMap<>();
+    private static final Map<String, Long> paginationTimestamps = new ConcurrentHashMap<>();
     private static final int PAGINATION_TIMEOUT_MINUTES = 5;
 
     /**
@@ -22,36 +22,41 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 public class DraftMessageHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DraftMessageHandler.class);
 
     private final String welcomeChannel = "1356752351561781349";
-    private MongoCollection<Document> teamsCollection;
     private MongoCollection<Document> draftHistoryCollection;
     private final Random random;
     private final int tradeChance;
 
     public DraftMessageHandler() {
-        this.teamsCollection = Main.getMongoConnection().getDatabase().getCollection("teams");
         this.draftHistoryCollection = Main.getMongoConnection().getDatabase().getCollection("data_history");
         this.random = new Random();
         this.tradeChance = 1;
     }
 
-    public void createMessage(Guild guild, Member member) {
+    /**
+     * Repêche un nouveau membre et annonce son équipe dans le salon de bienvenue.
+     * @param guild Le serveur
+     * @param member Le membre repêché
+     * @return Complété quand l'annonce a été envoyée (ou a échoué), ce qui suit les limites de débit de Discord
+     */
+    public CompletableFuture<Void> createMessage(Guild guild, Member member) {
         TextChannel channel = guild.getTextChannelById("1356752351561781349");
         if (channel == null) {
             System.out.println("Channel de bienvenue non trouvé: " + this.welcomeChannel);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         try {
             TeamSelectionResult teamSelection = getNextTeam();
             if (teamSelection == null || teamSelection.team == null) {
                 System.out.println("Erreur lors de la récupération d'une équipe");
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             Document teamDoc = teamSelection.team;
@@ -68,26 +73,32 @@ public class DraftMessageHandler {
             if (!usedTeams.contains(teamId)) usedTeams.add(teamId);
             updateDraftHistory(teamId, usedTeams);
 
-            byte[] imageBytes = generateDraftImage(
+            int memberCount = guild.getMemberCount() - 1;
+            CompletableFuture<Void> announced = Main.getRenderService().render("draft", null, () -> generateDraftImage(
                     teamName,
                     teamLogoUrl,
                     teamColorHex,
                     member,
-                    isTrade ? originalTeam : ""
-            );
-
-            int memberCount = guild.getMemberCount() - 1;
-            channel.sendMessage("Les " + teamName + " sont fiers de choisir **" + member.getAsMention() + "** comme " + memberCount + "e choix au repêchage !")
-                    .addFiles(FileUpload.fromData(imageBytes, member.getEffectiveName() + "_draft.png"))
-                    .queue();
+                    isTrade ? originalTeam : "",
+                    memberCount
+            )).handle((imageBytes, error) -> {
+                if (error != null) {
+                    LOGGER.error("Erreur lors de la génération du message {}: {}", "Globale", error.getMessage());
+                    return channel.sendMessage("Bienvenue à " + member.getAsMention() + " !").submit();
+                }
+                return channel.sendMessage("Les " + teamName + " sont fiers de choisir **" + member.getAsMention() + "** comme " + memberCount + "e choix au repêchage !")
+                        .addFiles(FileUpload.fromData(imageBytes, member.getEffectiveName() + "_draft.png"))
+                        .submit();
+            }).thenCompose(sent -> sent).thenAccept(message -> {});
 
             Main.getMongoConnection().getDatabase().getCollection("users").updateOne(
                     new Document("userId", member.getId()),
                     new Document("$set", new Document("teamName", teamName).append("roundPick", memberCount).append("tradeTeamName", teamSelection.originalTeamName))
             );
+            return announced;
         } catch (Exception ex) {
             LOGGER.error("Erreur lors de la génération du message {}: {}", "Globale", ex.getMessage());
-            channel.sendMessage("Bienvenue à " + member.getAsMention() + " !").queue();
+            return channel.sendMessage("Bienvenue à " + member.getAsMention() + " !").submit().thenAccept(message -> {});
         }
     }
 
@@ -112,7 +123,7 @@ public class DraftMessageHandler {
             }
 
             // Récupérer les données de l'équipe
-            Document teamDoc = teamsCollection.find(new Document("name", teamName)).first();
+            Document teamDoc = Main.getTeamManager().getTeamByName(teamName);
             if (teamDoc == null) {
                 channel.sendMessage("Bienvenue à " + member.getAsMention() + " ! (Équipe non trouvée: " + teamName + ")").queue();
                 return;
@@ -126,20 +137,12 @@ public class DraftMessageHandler {
             String originalTeamLogoUrl = "";
             String originalTeamName = userData.getString("tradeTeamName");
             if (originalTeamName != null) {
-                Document originalTeamDoc = teamsCollection.find(new Document("name", originalTeamName)).first();
+                Document originalTeamDoc = Main.getTeamManager().getTeamByName(originalTeamName);
                 if (originalTeamDoc != null) originalTeamLogoUrl = originalTeamDoc.getString("logo");
             }
 
             Integer roundPick = userData.getInteger("roundPick");
             if (roundPick == null) roundPick = guild.getMemberCount() - 1;
-            byte[] imageBytes = generateDraftImage(
-                    teamName,
-                    teamLogoUrl,
-                    teamColorHex,
-                    member,
-                    originalTeamLogoUrl,
-                    roundPick
-            );
 
             String verb = "sont";
             boolean plural = true;
@@ -147,9 +150,27 @@ public class DraftMessageHandler {
                 verb = "est";
                 plural = false;
             }
-            channel.sendMessage(teamDet + " " + teamName + " " + verb + " fier" + (plural ? "s" : "") + " de choisir **" + member.getAsMention() + "** comme " + roundPick + "e choix au repêchage !")
-                    .addFiles(FileUpload.fromData(imageBytes, member.getEffectiveName() + "_draft.png"))
-                    .queue();
+            String announcement = teamDet + " " + teamName + " " + verb + " fier" + (plural ? "s" : "") + " de choisir **" + member.getAsMention() + "** comme " + roundPick + "e choix au repêchage !";
+
+            String originalLogo = originalTeamLogoUrl;
+            int pick = roundPick;
+            Main.getRenderService().render("draft", null, () -> generateDraftImage(
+                    teamName,
+                    teamLogoUrl,
+                    teamColorHex,
+                    member,
+                    originalLogo,
+                    pick
+            )).whenComplete((imageBytes, error) -> {
+                if (error != null) {
+                    LOGGER.error("Erreur lors de la génération du message {}: {}", "Depuis DB", error.getMessage());
+                    channel.sendMessage("Bienvenue à " + member.getAsMention() + " !").queue();
+                    return;
+                }
+                channel.sendMessage(announcement)
+                        .addFiles(FileUpload.fromData(imageBytes, member.getEffectiveName() + "_draft.png"))
+                        .queue();
+            });
 
         } catch (Exception ex) {
             LOGGER.error("Erreur lors de la génération du message {}: {}", "Depuis DB", ex.getMessage());
@@ -177,7 +198,7 @@ public class DraftMessageHandler {
         if (isTrade) {
             // Si c'est un échange, trouver une équipe aléatoire différente de la dernière
             List<Document> allTeamsExceptLast = new ArrayList<>();
-            for (Document team : teamsCollection.find()) {
+            for (Document team : Main.getTeamManager().getAllTeams()) {
                 String teamId = team.getObjectId("_id").toString();
                 if (!teamId.equals(lastTeamId)) {
                     allTeamsExceptLast.add(team);
@@ -203,7 +224,7 @@ public class DraftMessageHandler {
         if (usedTeams.size() >= totalTeams - 1) usedTeams.clear();
 
         List<Document> availableTeams = new ArrayList<>();
-        for (Document team : teamsCollection.find()) {
+        for (Document team : Main.getTeamManager().getAllTeams()) {
             String teamId = team.getObjectId("_id").toString();
             if (teamId.equals(lastTeamId)) continue;
             if (!usedTeams.contains(teamId)) availableTeams.add(team);
@@ -218,7 +239,7 @@ public class DraftMessageHandler {
         }
 
         // Fallback...
-        for (Document team : teamsCollection.find()) {
+        for (Document team : Main.getTeamManager().getAllTeams()) {
             String teamId = team.getObjectId("_id").toString();
             if (!teamId.equals(lastTeamId)) {
                 usedTeams.clear();
@@ -233,7 +254,7 @@ public class DraftMessageHandler {
 
     private Document getRandomTeamExcept(String excludeTeamId) {
         List<Document> teams = new ArrayList<>();
-        for (Document team : teamsCollection.find()) {
+        for (Document team : Main.getTeamManager().getAllTeams()) {
             String teamId = team.getObjectId("_id").toString();
             if (!teamId.equals(excludeTeamId)) {
                 teams.add(team);
@@ -251,7 +272,7 @@ public class DraftMessageHandler {
                 .append("_id", "draft_tracker")
                 .append("lastTeamId", "")
                 .append("usedTeams", new ArrayList<String>())
-                .append("totalTeams", (int)teamsCollection.countDocuments());
+                .append("totalTeams", Main.getTeamManager().getAllTeams().size());
         draftHistoryCollection.insertOne(historyDoc);
     }
 
@@ -263,10 +284,6 @@ public class DraftMessageHandler {
         );
     }
 
-    private byte[] generateDraftImage(String teamName, String logoUrl, String colorHex, Member member, String originalTeam) throws IOException, URISyntaxException {
-        return generateDraftImage(teamName, logoUrl, colorHex, member, originalTeam, member.getGuild().getMemberCount() - 1);
-    }
-
     private byte[] generateDraftImage(String teamName, String logoUrl, String colorHex, Member member, String originalTeam, int roundPick) throws IOException, URISyntaxException {
         int width = 800;
         int height = 400;
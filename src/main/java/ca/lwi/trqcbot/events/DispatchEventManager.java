@@ -0,0 +1,176 @@
+package ca.lwi.trqcbot.events;
+
+import ca.lwi.trqcbot.metrics.LatencyHistogram;
+import ca.lwi.trqcbot.metrics.Metrics;
+import io.github.cdimascio.dotenv.Dotenv;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.guild.member.GenericGuildMemberEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.voice.GenericGuildVoiceEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.hooks.IEventManager;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gestionnaire d'événements JDA qui exécute les listeners hors du thread du gateway.
+ * Les événements sont répartis sur des "voies" à un seul thread selon l'utilisateur concerné,
+ * ce qui garantit l'ordre des événements d'un même utilisateur tout en traitant les autres en parallèle.
+ */
+public class DispatchEventManager implements IEventManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchEventManager.class);
+    private static final long SLOW_HANDLER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<RegisteredListener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor[] lanes;
+    private final LatencyHistogram queueWait = Metrics.histogram("events.queue_wait");
+
+    /**
+     * @param laneCount Nombre de voies (threads) de traitement
+     * @param queueCapacity Nombre maximal d'événements en attente par voie
+     * @param virtualThreads Utiliser des threads virtuels plutôt que des threads système
+     */
+    public DispatchEventManager(int laneCount, int queueCapacity, boolean virtualThreads) {
+        this.lanes = new ThreadPoolExecutor[Math.max(1, laneCount)];
+        RejectedExecutionHandler blockWhenFull = (task, executor) -> {
+            // Voie saturée : bloquer le gateway plutôt que de perdre ou réordonner l'événement
+            if (executor.isShutdown()) throw new RejectedExecutionException("Gestionnaire d'événements arrêté");
+            Metrics.counter("events.saturated").increment();
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrompu en attente d'une voie libre", e);
+            }
+        };
+        for (int i = 0; i < lanes.length; i++) {
+            ThreadFactory factory = virtualThreads
+                    ? Thread.ofVirtual().name("event-lane-" + i).factory()
+                    : Thread.ofPlatform().name("event-lane-" + i).daemon(true).factory();
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), factory, blockWhenFull);
+        }
+        Metrics.gauge("events.queue_depth", () -> {
+            long depth = 0;
+            for (ThreadPoolExecutor lane : lanes) depth += lane.getQueue().size();
+            return depth;
+        });
+        LOGGER.info("Gestionnaire d'événements: {} voies, {} événements max par voie, threads {}", lanes.length, queueCapacity, virtualThreads ? "virtuels" : "système");
+    }
+
+    /**
+     * Crée le gestionnaire à partir de la configuration (.env) :
+     * EVENT_LANES, EVENT_QUEUE_CAPACITY et EVENT_VIRTUAL_THREADS.
+     */
+    public static DispatchEventManager fromEnv(Dotenv dotenv) {
+        int laneCount = Integer.parseInt(dotenv.get("EVENT_LANES", "16"));
+        int queueCapacity = Integer.parseInt(dotenv.get("EVENT_QUEUE_CAPACITY", "1000"));
+        boolean virtualThreads = Boolean.parseBoolean(dotenv.get("EVENT_VIRTUAL_THREADS", "true"));
+        return new DispatchEventManager(laneCount, queueCapacity, virtualThreads);
+    }
+
+    @Override
+    public void register(@NotNull Object listener) {
+        if (!(listener instanceof EventListener eventListener)) {
+            throw new IllegalArgumentException("Listener must implement EventListener");
+        }
+        listeners.add(new RegisteredListener(eventListener, Metrics.histogram("events.handler." + listenerName(listener))));
+    }
+
+    @Override
+    public void unregister(@NotNull Object listener) {
+        listeners.removeIf(registered -> registered.listener() == listener);
+    }
+
+    @Override
+    public void handle(@NotNull GenericEvent event) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            lanes[laneFor(event)].execute(() -> dispatch(event, enqueuedAt));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Événement ignoré ({}): {}", event.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Object> getRegisteredListeners() {
+        List<Object> registered = new ArrayList<>(listeners.size());
+        for (RegisteredListener listener : listeners) registered.add(listener.listener());
+        return Collections.unmodifiableList(registered);
+    }
+
+    private void dispatch(GenericEvent event, long enqueuedAt) {
+        queueWait.recordSince(enqueuedAt);
+        for (RegisteredListener registered : listeners) {
+            long start = System.nanoTime();
+            try {
+                registered.listener().onEvent(event);
+            } catch (Throwable t) {
+                LOGGER.error("Erreur dans {} pour {}: {}", listenerName(registered.listener()), event.getClass().getSimpleName(), t.getMessage(), t);
+            }
+            long elapsed = System.nanoTime() - start;
+            registered.latency().recordNanos(elapsed);
+            if (elapsed > SLOW_HANDLER_NANOS) {
+                LOGGER.warn("{} a pris {} ms pour traiter {}", listenerName(registered.listener()), TimeUnit.NANOSECONDS.toMillis(elapsed), event.getClass().getSimpleName());
+            }
+        }
+    }
+
+    // Les listeners anonymes n'ont pas de nom simple : utiliser le nom complet (ex: Main$1)
+    private static String listenerName(Object listener) {
+        String name = listener.getClass().getSimpleName();
+        return name.isEmpty() ? listener.getClass().getName() : name;
+    }
+
+    /**
+     * Choisit la voie d'un événement : tous les événements d'un même utilisateur passent par la même voie.
+     */
+    private int laneFor(GenericEvent event) {
+        long key = routingKey(event);
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(mixed ^ (mixed >>> 32), (long) lanes.length);
+    }
+
+    private static long routingKey(GenericEvent event) {
+        if (event instanceof MessageReceivedEvent e) return e.getAuthor().getIdLong();
+        if (event instanceof GenericInteractionCreateEvent e) return e.getUser().getIdLong();
+        if (event instanceof GenericGuildVoiceEvent e) return e.getMember().getIdLong();
+        if (event instanceof GenericGuildMemberEvent e) return e.getMember().getIdLong();
+        if (event instanceof GuildMemberRemoveEvent e) return e.getUser().getIdLong();
+        if (event instanceof GenericGuildEvent e) return e.getGuild().getIdLong();
+        return 0;
+    }
+
+    /**
+     * Arrête les voies en laissant les événements en attente se terminer.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) lane.shutdown();
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) lane.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            for (ThreadPoolExecutor lane : lanes) lane.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record RegisteredListener(EventListener listener, LatencyHistogram latency) {}
+}
@@ -30,7 +30,11 @@ public class GuildMemberJoinListeners extends ListenerAdapter {
         Guild guild = e.getGuild();
         Member member = e.getMember();
         Document existingUser = userCollection.find(new Document("userId", member.getId())).first();
-        if (existingUser != null) return;
+        if (existingUser != null) {
+            // Retiré du classement à son départ : y revenir avec son score enregistré
+            Main.getRankManager().restoreToLeaderboard(existingUser);
+            return;
+        }
 
         Document reputationDoc = new Document("reputationScore", 0)
                 .append("messagesCount", 0)
@@ -50,6 +54,7 @@ public class GuildMemberJoinListeners extends ListenerAdapter {
                 .append("reputation", reputationDoc);
 
         userCollection.insertOne(userDoc);
+        Main.getRankManager().getLeaderboardIndex().update(member.getId(), 0);
 
         Role recrueRole = guild.getRoleById(recrueRoleId);
         if (recrueRole != null) {
@@ -29,6 +29,8 @@ public class ReadyListeners extends ListenerAdapter {
         e.getJDA().updateCommands().addCommands(Main.getCommandsManager().getCommands().stream().filter(command -> !command.isGuildCommand()).collect(Collectors.toList())).queue();
         Main.getMembersRecoveryHandler().init(guild);
         Main.getContractsRecoveryHandler().init(guild);
+        Main.getRankManager().resumeVoiceSessions(guild);
+        Main.getRankManager().pruneLeaderboard(guild);
         Main.getContractsManager().checkExpiringContracts();
     }
 
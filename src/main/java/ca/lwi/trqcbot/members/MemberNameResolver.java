@@ -0,0 +1,197 @@
+package ca.lwi.trqcbot.members;
+
+import ca.lwi.trqcbot.metrics.LatencyHistogram;
+import ca.lwi.trqcbot.metrics.Metrics;
+import io.github.cdimascio.dotenv.Dotenv;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
+import net.dv8tion.jda.api.events.guild.member.update.GuildMemberUpdateNicknameEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateGlobalNameEvent;
+import net.dv8tion.jda.api.events.user.update.UserUpdateNameEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Résolution des noms d'affichage des membres pour les classements.
+ * Ordre de recherche : cache de membres de JDA, cache de noms avec expiration,
+ * puis une requête groupée retrieveMembersByIds par tranche de 100 pour les manquants.
+ * Un nom en cache est oublié dès que le membre change de surnom ou de nom, ou quitte le serveur ;
+ * les noms expirés sont purgés au fil des résolutions.
+ */
+public class MemberNameResolver extends ListenerAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemberNameResolver.class);
+    // Limite de Discord pour une requête de membres par ID
+    private static final int CHUNK_SIZE = 100;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final long nameTtlMillis;
+    private final long absentTtlMillis;
+    private final Map<String, CachedName> names = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeAt = new AtomicLong();
+
+    private final LongAdder jdaCacheHits = Metrics.counter("members.names.jda_cache_hit");
+    private final LongAdder cacheHits = Metrics.counter("members.names.cache_hit");
+    private final LongAdder fetched = Metrics.counter("members.names.fetched");
+    private final LatencyHistogram fetchLatency = Metrics.histogram("members.names.fetch");
+
+    /**
+     * @param nameTtlMillis Durée de conservation d'un nom résolu
+     * @param absentTtlMillis Durée de conservation d'un membre introuvable (a quitté le serveur)
+     */
+    public MemberNameResolver(long nameTtlMillis, long absentTtlMillis) {
+        this.nameTtlMillis = nameTtlMillis;
+        this.absentTtlMillis = absentTtlMillis;
+        Metrics.gauge("members.names.cached", names::size);
+    }
+
+    /**
+     * Crée le résolveur à partir de la configuration (.env) : MEMBER_NAME_CACHE_MINUTES.
+     */
+    public static MemberNameResolver fromEnv(Dotenv dotenv) {
+        long ttl = TimeUnit.MINUTES.toMillis(Long.parseLong(dotenv.get("MEMBER_NAME_CACHE_MINUTES", "10")));
+        return new MemberNameResolver(ttl, Math.min(ttl, TimeUnit.MINUTES.toMillis(1)));
+    }
+
+    /**
+     * Résout les noms d'affichage d'un ensemble de membres.
+     * Les membres absents du serveur (ou non résolus à temps) n'apparaissent pas dans le résultat.
+     * Le futur est complété hors du thread de JDA.
+     * @param guild Le serveur
+     * @param userIds IDs des utilisateurs à afficher
+     * @return Les noms d'affichage par ID d'utilisateur
+     */
+    public CompletableFuture<Map<String, String>> resolveNames(Guild guild, Collection<String> userIds) {
+        Map<String, String> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        purgeExpired(now);
+
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            Member cachedMember = guild.getMemberById(userId);
+            if (cachedMember != null) {
+                jdaCacheHits.increment();
+                resolved.put(userId, cachedMember.getEffectiveName());
+                remember(guild, userId, cachedMember.getEffectiveName(), now);
+                continue;
+            }
+            CachedName cached = names.get(key(guild, userId));
+            if (cached != null && cached.expiresAt() > now) {
+                cacheHits.increment();
+                if (cached.name() != null) resolved.put(userId, cached.name());
+                continue;
+            }
+            missing.add(userId);
+        }
+
+        if (missing.isEmpty()) return CompletableFuture.completedFuture(resolved);
+
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        for (int i = 0; i < missing.size(); i += CHUNK_SIZE) {
+            requests.add(fetchChunk(guild, missing.subList(i, Math.min(missing.size(), i + CHUNK_SIZE))));
+        }
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(ignored -> {
+                    long at = System.currentTimeMillis();
+                    for (String userId : missing) {
+                        CachedName cached = names.get(key(guild, userId));
+                        if (cached != null && cached.expiresAt() > at && cached.name() != null) resolved.put(userId, cached.name());
+                    }
+                    return resolved;
+                });
+    }
+
+    /**
+     * Oublie le nom d'un membre (changement de surnom, départ du serveur).
+     * @param guild Le serveur
+     * @param userId ID de l'utilisateur
+     */
+    public void invalidate(Guild guild, String userId) {
+        names.remove(key(guild, userId));
+    }
+
+    /**
+     * Oublie le nom d'un utilisateur sur tous les serveurs (changement de nom d'utilisateur ou de nom global).
+     * @param userId ID de l'utilisateur
+     */
+    public void invalidate(String userId) {
+        String suffix = ":" + userId;
+        names.keySet().removeIf(key -> key.endsWith(suffix));
+    }
+
+    @Override
+    public void onGuildMemberUpdateNickname(@NotNull GuildMemberUpdateNicknameEvent e) {
+        invalidate(e.getGuild(), e.getUser().getId());
+    }
+
+    @Override
+    public void onUserUpdateName(@NotNull UserUpdateNameEvent e) {
+        invalidate(e.getUser().getId());
+    }
+
+    @Override
+    public void onUserUpdateGlobalName(@NotNull UserUpdateGlobalNameEvent e) {
+        invalidate(e.getUser().getId());
+    }
+
+    @Override
+    public void onGuildMemberRemove(@NotNull GuildMemberRemoveEvent e) {
+        invalidate(e.getGuild(), e.getUser().getId());
+    }
+
+    private CompletableFuture<Void> fetchChunk(Guild guild, List<String> userIds) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        long start = System.nanoTime();
+        List<String> chunk = List.copyOf(userIds);
+        guild.retrieveMembersByIds(chunk.toArray(new String[0]))
+                .setTimeout(REQUEST_TIMEOUT)
+                .onSuccess(members -> {
+                    fetchLatency.recordSince(start);
+                    long now = System.currentTimeMillis();
+                    Map<String, String> found = new HashMap<>();
+                    for (Member member : members) found.put(member.getId(), member.getEffectiveName());
+                    for (String userId : chunk) remember(guild, userId, found.get(userId), now);
+                    fetched.add(members.size());
+                    future.complete(null);
+                })
+                .onError(error -> {
+                    // Les noms manquants utiliseront la valeur de repli de l'appelant
+                    LOGGER.warn("Impossible de récupérer {} membres: {}", chunk.size(), error.getMessage());
+                    future.complete(null);
+                });
+        return future;
+    }
+
+    // Au plus une purge par intervalle : un membre absent des classements n'est jamais relu, son nom doit être retiré ici
+    private void purgeExpired(long now) {
+        long next = nextPurgeAt.get();
+        if (now < next || !nextPurgeAt.compareAndSet(next, now + absentTtlMillis)) return;
+        names.values().removeIf(cached -> cached.expiresAt() <= now);
+    }
+
+    private void remember(Guild guild, String userId, String name, long now) {
+        names.put(key(guild, userId), new CachedName(name, now + (name != null ? nameTtlMillis : absentTtlMillis)));
+    }
+
+    private static String key(Guild guild, String userId) {
+        return guild.getId() + ":" + userId;
+    }
+
+    private record CachedName(String name, long expiresAt) {}
+}
@@ -0,0 +1,93 @@
+package ca.lwi.trqcbot.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latence sans verrou à buckets exponentiels (puissances de 2 en microsecondes).
+ * Précision d'environ un facteur 2, suffisante pour repérer les chemins lents.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Enregistre une durée mesurée avec System.nanoTime().
+     * @param nanos Durée en nanosecondes
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public void recordMillis(long millis) {
+        recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Mesure l'exécution d'une tâche.
+     * @param startNanos Valeur de System.nanoTime() au début de la tâche
+     */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @param percentile Percentile entre 0 et 1
+     * @return Borne supérieure estimée du percentile, en microsecondes
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long threshold = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= threshold) return i == 0 ? 0 : 1L << i;
+        }
+        return maxMicros.get();
+    }
+
+    public String summary() {
+        long n = count.sum();
+        long avg = n > 0 ? totalMicros.sum() / n : 0;
+        return String.format("%s count=%d avg=%s p50=%s p95=%s p99=%s max=%s", name, n,
+                format(avg), format(getPercentileMicros(0.50)), format(getPercentileMicros(0.95)),
+                format(getPercentileMicros(0.99)), format(maxMicros.get()));
+    }
+
+    private static String format(long micros) {
+        if (micros >= 1_000_000) return String.format("%.2fs", micros / 1_000_000.0);
+        if (micros >= 1_000) return String.format("%.1fms", micros / 1_000.0);
+        return micros + "µs";
+    }
+}
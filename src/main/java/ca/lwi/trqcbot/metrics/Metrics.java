@@ -0,0 +1,55 @@
+package ca.lwi.trqcbot.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registre global des métriques du bot (histogrammes, compteurs et jauges).
+ * Consultable depuis la console avec la commande "metrics".
+ */
+public final class Metrics {
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {}
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Enregistre une jauge évaluée à chaque rapport.
+     * @param name Nom de la jauge
+     * @param supplier Fonction retournant la valeur courante
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * @return Un rapport texte de toutes les métriques enregistrées
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        GAUGES.forEach((name, supplier) -> {
+            long value;
+            try {
+                value = supplier.getAsLong();
+            } catch (Exception e) {
+                value = -1;
+            }
+            sb.append("[gauge] ").append(name).append(" = ").append(value).append('\n');
+        });
+        COUNTERS.forEach((name, counter) -> sb.append("[counter] ").append(name).append(" = ").append(counter.sum()).append('\n'));
+        HISTOGRAMS.values().forEach(histogram -> sb.append("[histogram] ").append(histogram.summary()).append('\n'));
+        return sb.isEmpty() ? "Aucune métrique enregistrée." : sb.toString().trim();
+    }
+}
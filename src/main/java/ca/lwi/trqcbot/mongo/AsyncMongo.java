@@ -0,0 +1,81 @@
+package ca.lwi.trqcbot.mongo;
+
+import ca.lwi.trqcbot.metrics.Metrics;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Exécute les appels MongoDB hors des threads de JDA et retourne des CompletableFuture,
+ * composables avec RestAction#submit(). Le nombre de threads ne dépasse pas la taille du pool de connexions :
+ * un thread de plus ne ferait qu'attendre une connexion libre.
+ */
+public class AsyncMongo {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads Nombre de threads d'exécution
+     * @param queueCapacity Nombre d'appels en attente au-delà duquel les nouveaux appels sont refusés
+     */
+    public AsyncMongo(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mongo-async-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Metrics.gauge("mongo.async.queue", () -> executor.getQueue().size());
+        Metrics.gauge("mongo.async.active", executor::getActiveCount);
+    }
+
+    public static AsyncMongo fromEnv(Dotenv dotenv) {
+        int threads = Integer.parseInt(dotenv.get("MONGO_ASYNC_THREADS", dotenv.get("MONGO_POOL_MAX_SIZE", "20")));
+        int queueCapacity = Integer.parseInt(dotenv.get("MONGO_ASYNC_QUEUE_CAPACITY", "1000"));
+        return new AsyncMongo(threads, queueCapacity);
+    }
+
+    /**
+     * @param call Appel MongoDB bloquant
+     * @return Un futur complété par le résultat de l'appel, ou en erreur si la file est pleine
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            Metrics.counter("mongo.async.rejected").increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @param call Écriture MongoDB bloquante
+     * @return Un futur complété une fois l'écriture terminée
+     */
+    public CompletableFuture<Void> run(Runnable call) {
+        return supply(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,14 +1,25 @@
 package ca.lwi.trqcbot.mongo;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
+import com.mongodb.ReadPreference;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class MongoConnection {
 
     public static MongoConnection instance;
     private final MongoCredentials mongoCredentials;
     private MongoClient mongoClient;
+    private ReadPreference readPreference = ReadPreference.primary();
+    private AsyncMongo async;
 
     public MongoConnection(MongoCredentials mongoCredentials) {
         instance = this;
@@ -16,16 +27,69 @@ public class MongoConnection {
     }
 
     public void init() {
+        Dotenv dotenv = Dotenv.load();
         try {
             String strUri = String.format("mongodb+srv://%s:%s@%s/?retryWrites=true&w=majority", mongoCredentials.getUsername(), mongoCredentials.getPassword(), mongoCredentials.getIp());
-            mongoClient = MongoClients.create(strUri);
+            mongoClient = MongoClients.create(buildSettings(new ConnectionString(strUri), dotenv));
             mongoClient.listDatabaseNames().first();
+            async = AsyncMongo.fromEnv(dotenv);
             System.out.println("Successfully connected to MongoDB Atlas!");
         } catch (Exception e) {
             System.err.println("Failed to connect to MongoDB Atlas: " + e.getMessage());
             e.printStackTrace();
             throw new RuntimeException("Failed to initialize MongoDB connection", e);
         }
+
+        MongoDatabase database = getDatabase();
+        MongoIndexes.ensureIndexes(database);
+        if (Boolean.parseBoolean(dotenv.get("MONGO_VERIFY_QUERY_PLANS", "false"))) {
+            MongoIndexes.verifyQueryPlans(database);
+        }
+    }
+
+    /**
+     * Paramètres du client : pool, délais, compression et écouteur de métriques.
+     */
+    private MongoClientSettings buildSettings(ConnectionString connectionString, Dotenv dotenv) {
+        int poolMaxSize = Integer.parseInt(dotenv.get("MONGO_POOL_MAX_SIZE", "20"));
+        int poolMinSize = Integer.parseInt(dotenv.get("MONGO_POOL_MIN_SIZE", "2"));
+        long poolMaxWaitMs = Long.parseLong(dotenv.get("MONGO_POOL_MAX_WAIT_MS", "2000"));
+        int connectTimeoutMs = Integer.parseInt(dotenv.get("MONGO_CONNECT_TIMEOUT_MS", "5000"));
+        int socketTimeoutMs = Integer.parseInt(dotenv.get("MONGO_SOCKET_TIMEOUT_MS", "15000"));
+        this.readPreference = ReadPreference.valueOf(dotenv.get("MONGO_READ_PREFERENCE", "secondaryPreferred"));
+
+        MongoMetricsListener metricsListener = new MongoMetricsListener();
+        return MongoClientSettings.builder()
+                .applyConnectionString(connectionString)
+                .applyToConnectionPoolSettings(builder -> builder
+                        .maxSize(poolMaxSize)
+                        .minSize(poolMinSize)
+                        .maxWaitTime(poolMaxWaitMs, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(metricsListener))
+                .applyToSocketSettings(builder -> builder
+                        .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(socketTimeoutMs, TimeUnit.MILLISECONDS))
+                .compressorList(parseCompressors(dotenv.get("MONGO_COMPRESSORS", "zlib")))
+                .addCommandListener(metricsListener)
+                .build();
+    }
+
+    /**
+     * @param value Liste séparée par des virgules (zlib, snappy)
+     * @return Les compresseurs, dans l'ordre de préférence
+     */
+    private static List<MongoCompressor> parseCompressors(String value) {
+        List<MongoCompressor> compressors = new ArrayList<>();
+        for (String name : value.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "zlib" -> compressors.add(MongoCompressor.createZlibCompressor());
+                // Nécessite org.xerial.snappy:snappy-java dans le classpath
+                case "snappy" -> compressors.add(MongoCompressor.createSnappyCompressor());
+                case "", "none" -> { }
+                default -> System.err.println("Compresseur MongoDB inconnu ignoré: " + name);
+            }
+        }
+        return compressors;
     }
 
     public MongoClient getMongoClient() {
@@ -39,7 +103,29 @@ public class MongoConnection {
         return getMongoClient().getDatabase(mongoCredentials.getDatabase());
     }
 
+    /**
+     * Base de données pour les lectures d'affichage (classements, cartes de joueur),
+     * qui tolèrent d'être servies par un secondaire légèrement en retard.
+     */
+    public MongoDatabase getReadOnlyDatabase() {
+        return getDatabase().withReadPreference(readPreference);
+    }
+
+    /**
+     * @return L'exécuteur des appels MongoDB non bloquants
+     */
+    public AsyncMongo getAsync() {
+        if (async == null) {
+            throw new IllegalStateException("MongoDB client not initialized. Call init() first.");
+        }
+        return async;
+    }
+
     public void close() {
+        if (async != null) {
+            async.shutdown();
+            async = null;
+        }
         if (mongoClient != null) {
             mongoClient.close();
             mongoClient = null;
@@ -0,0 +1,140 @@
+package ca.lwi.trqcbot.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Déclare les index requis par les requêtes du bot et vérifie, sur demande, leurs plans d'exécution.
+ * Toute nouvelle requête fréquente doit avoir son index ici, et sa forme canonique dans {@link #canonicalQueries()}.
+ */
+public final class MongoIndexes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexes.class);
+
+    private MongoIndexes() {}
+
+    /**
+     * @return Les index à garantir, par collection
+     */
+    private static Map<String, List<IndexModel>> requiredIndexes() {
+        Map<String, List<IndexModel>> indexes = new LinkedHashMap<>();
+        indexes.put("users", List.of(
+                new IndexModel(Indexes.ascending("userId"), new IndexOptions().unique(true)),
+                new IndexModel(Indexes.ascending("teamName")),
+                new IndexModel(Indexes.ascending("contract.status", "contract.expiryDate"))));
+        indexes.put("teams", List.of(
+                new IndexModel(Indexes.ascending("name"), new IndexOptions().unique(true))));
+        indexes.put("contract_offers", List.of(
+                new IndexModel(Indexes.ascending("userId", "status")),
+                new IndexModel(Indexes.ascending("status", "expiresAt"))));
+        indexes.put("tickets", List.of(
+                new IndexModel(Indexes.ascending("threadId")),
+                new IndexModel(Indexes.ascending("archived"))));
+        indexes.put("data_history", List.of(
+                new IndexModel(Indexes.ascending("type")),
+                new IndexModel(Indexes.ascending("channelId"))));
+        indexes.put("messages", List.of(
+                new IndexModel(Indexes.ascending("channelId", "type"))));
+        indexes.put("resources", List.of(
+                new IndexModel(Indexes.ascending("type"))));
+        indexes.put("teams_lineup", List.of(
+                new IndexModel(Indexes.ascending("team"))));
+        indexes.put("retired_numbers", List.of(
+                new IndexModel(Indexes.ascending("team"))));
+        indexes.put("voice_activity", List.of(
+                new IndexModel(Indexes.ascending("userId", "day"), new IndexOptions().unique(true)),
+                new IndexModel(Indexes.ascending("day"))));
+        return indexes;
+    }
+
+    /**
+     * @return Les requêtes représentatives du bot, par collection, qui ne doivent jamais parcourir toute la collection
+     */
+    private static List<CanonicalQuery> canonicalQueries() {
+        return List.of(
+                new CanonicalQuery("users", Filters.eq("userId", "0")),
+                new CanonicalQuery("users", Filters.eq("teamName", "")),
+                new CanonicalQuery("users", Filters.and(Filters.eq("contract.status", "active"), Filters.lte("contract.expiryDate", new Date()))),
+                new CanonicalQuery("teams", Filters.eq("name", "")),
+                new CanonicalQuery("contract_offers", Filters.and(Filters.eq("userId", "0"), Filters.eq("status", "pending"))),
+                new CanonicalQuery("contract_offers", Filters.eq("status", "pending")),
+                new CanonicalQuery("tickets", Filters.eq("threadId", "0")),
+                new CanonicalQuery("tickets", Filters.eq("archived", true)),
+                new CanonicalQuery("data_history", Filters.eq("type", "hall_of_fame")),
+                new CanonicalQuery("messages", Filters.and(Filters.eq("channelId", "0"), Filters.eq("type", "donors_message"))),
+                new CanonicalQuery("resources", Filters.eq("type", "config")),
+                new CanonicalQuery("teams_lineup", Filters.eq("team", "")),
+                new CanonicalQuery("retired_numbers", Filters.eq("team", "")),
+                new CanonicalQuery("voice_activity", Filters.and(Filters.eq("userId", "0"), Filters.eq("day", new Date(0)))),
+                new CanonicalQuery("voice_activity", Filters.gte("day", new Date(0)))
+        );
+    }
+
+    /**
+     * Crée les index manquants. Les index existants ne sont pas modifiés.
+     * Un échec (par exemple des doublons empêchant un index unique) est journalisé sans bloquer le démarrage.
+     */
+    public static void ensureIndexes(MongoDatabase database) {
+        requiredIndexes().forEach((collection, models) -> {
+            try {
+                List<String> names = database.getCollection(collection).createIndexes(models);
+                LOGGER.info("Index vérifiés pour {}: {}", collection, names);
+            } catch (MongoException e) {
+                LOGGER.error("Impossible de créer les index de {}: {}", collection, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Exécute explain sur chaque requête canonique.
+     * @throws IllegalStateException Si une requête serait exécutée par un parcours complet (COLLSCAN)
+     */
+    public static void verifyQueryPlans(MongoDatabase database) {
+        CodecRegistry registry = database.getCodecRegistry();
+        List<String> scans = new ArrayList<>();
+        for (CanonicalQuery query : canonicalQueries()) {
+            BsonDocument filter = query.filter().toBsonDocument(BsonDocument.class, registry);
+            Document explain = database.runCommand(new Document("explain",
+                    new Document("find", query.collection()).append("filter", filter))
+                    .append("verbosity", "queryPlanner"));
+            Object plan = explain.get("queryPlanner", Document.class).get("winningPlan");
+            if (containsStage(plan, "COLLSCAN")) scans.add(query.collection() + " " + filter.toJson());
+        }
+        if (!scans.isEmpty()) {
+            throw new IllegalStateException("Requêtes sans index (COLLSCAN): " + String.join(", ", scans));
+        }
+        LOGGER.info("Plans d'exécution vérifiés: aucune requête canonique ne parcourt une collection complète");
+    }
+
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof Document document) {
+            if (stage.equals(document.getString("stage"))) return true;
+            for (Object value : document.values()) {
+                if (containsStage(value, stage)) return true;
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object value : list) {
+                if (containsStage(value, stage)) return true;
+            }
+        }
+        return false;
+    }
+
+    private record CanonicalQuery(String collection, Bson filter) {}
+}
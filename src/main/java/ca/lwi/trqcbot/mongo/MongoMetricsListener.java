@@ -0,0 +1,96 @@
+package ca.lwi.trqcbot.mongo;
+
+import ca.lwi.trqcbot.metrics.Metrics;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Alimente les métriques du bot à partir des événements du pilote MongoDB :
+ * latence de chaque commande par collection (mongo.command.find.users, ...) et saturation du pool de connexions.
+ */
+@SuppressWarnings("deprecation")
+public class MongoMetricsListener extends ConnectionPoolListenerAdapter implements CommandListener {
+
+    // Nom de la métrique de chaque commande en cours, par ID de requête
+    private final Map<Integer, String> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger poolSize = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger waitQueue = new AtomicInteger();
+
+    public MongoMetricsListener() {
+        Metrics.gauge("mongo.pool.size", poolSize::get);
+        Metrics.gauge("mongo.pool.checked_out", checkedOut::get);
+        Metrics.gauge("mongo.pool.wait_queue", waitQueue::get);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String name = event.getCommandName();
+        BsonValue target = event.getCommand().get(name);
+        String metric = target != null && target.isString()
+                ? "mongo.command." + name + "." + target.asString().getValue()
+                : "mongo.command." + name;
+        inFlight.put(event.getRequestId(), metric);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String metric = inFlight.remove(event.getRequestId());
+        if (metric == null) return;
+        Metrics.histogram(metric).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String metric = inFlight.remove(event.getRequestId());
+        if (metric == null) return;
+        Metrics.histogram(metric).recordNanos(event.getElapsedTime(TimeUnit.NANOSECONDS));
+        Metrics.counter(metric + ".failed").increment();
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        poolSize.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        poolSize.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        waitQueue.incrementAndGet();
+        Metrics.counter("mongo.pool.waits").increment();
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        waitQueue.decrementAndGet();
+    }
+}
@@ -0,0 +1,213 @@
+package ca.lwi.trqcbot.ranks;
+
+import ca.lwi.trqcbot.ranks.ChatActivityCounters.ChatCounts;
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tampon "write-behind" de l'activité de chat.
+ * Les messages sont agrégés en mémoire par utilisateur puis écrits périodiquement
+ * dans la collection users en deux bulkWrite, au lieu d'un find + $set par utilisateur.
+ */
+public class ChatActivityBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatActivityBuffer.class);
+    private static final long DAY_MS = 1000L * 60 * 60 * 24;
+
+    private final MongoCollection<Document> userCollection;
+    private final Consumer<Document> onUserFlushed;
+    private final ChatActivityCounters pending;
+
+    /**
+     * @param userCollection Collection des utilisateurs
+     * @param onUserFlushed Appelé avec le document à jour de chaque utilisateur écrit (ex: promotions)
+     * @param maxPendingUsers Nombre d'utilisateurs en attente au-delà duquel une écriture anticipée est demandée
+     * @param onPressure Demande d'écriture anticipée (ne doit pas bloquer)
+     */
+    public ChatActivityBuffer(MongoCollection<Document> userCollection, Consumer<Document> onUserFlushed,
+                              int maxPendingUsers, Runnable onPressure) {
+        this.userCollection = userCollection;
+        this.onUserFlushed = onUserFlushed;
+        this.pending = new ChatActivityCounters(maxPendingUsers, onPressure);
+    }
+
+    /**
+     * Enregistre un message dans le tampon. Aucun accès à la base de données.
+     * @param message Le message reçu
+     * @param userId Snowflake de l'auteur
+     */
+    public void record(Message message, long userId) {
+        List<User> mentionedUsers = message.getMentions().getUsers();
+        boolean isTag = false;
+        for (User user : mentionedUsers) {
+            if (user.getIdLong() != userId) {
+                isTag = true;
+                break;
+            }
+        }
+        Message referencedMessage = message.getReferencedMessage();
+        boolean isResponse = (message.getContentRaw().contains("@") && !mentionedUsers.isEmpty())
+                || (referencedMessage != null && referencedMessage.getAuthor().getIdLong() != userId);
+
+        long now = System.currentTimeMillis();
+        pending.record(userId, now - (now % DAY_MS), now, isTag, isResponse);
+    }
+
+    /**
+     * @return Nombre d'utilisateurs en attente d'écriture
+     */
+    public int getPendingUsers() {
+        return pending.size();
+    }
+
+    /**
+     * Écrit toutes les activités en attente dans la base de données.
+     * Phase 1 : pipeline de mise à jour des compteurs et des compteurs quotidiens, évalué par le serveur
+     * sur l'état courant. Phase 2 : relecture des documents modifiés en une requête, puis $set groupé des scores,
+     * chacun conditionné à la version des compteurs sur laquelle il a été calculé.
+     */
+    public synchronized void flush() {
+        if (pending.size() == 0) return;
+
+        Map<String, ChatCounts> drained = new HashMap<>();
+        for (ChatCounts counts : pending.drain()) {
+            drained.put(Long.toString(counts.userId()), counts);
+        }
+        if (drained.isEmpty()) return;
+
+        long start = System.currentTimeMillis();
+        // Même ordre que les écritures : l'index d'une erreur du bulkWrite désigne l'utilisateur
+        List<String> userIds = new ArrayList<>(drained.keySet());
+        List<WriteModel<Document>> increments = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            increments.add(new UpdateOneModel<>(Filters.eq("userId", userId), chatActivityPipeline(drained.get(userId))));
+        }
+        try {
+            userCollection.bulkWrite(increments, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Les autres écritures ont été appliquées : seuls les deltas en erreur sont remis en file
+            for (BulkWriteError error : e.getWriteErrors()) {
+                pending.restore(drained.remove(userIds.get(error.getIndex())));
+            }
+            LOGGER.error("Erreur lors de l'écriture de l'activité de chat ({}/{} utilisateurs): {}",
+                    e.getWriteErrors().size(), userIds.size(), e.getMessage(), e);
+            if (drained.isEmpty()) return;
+        } catch (Exception e) {
+            // Remettre les deltas en file pour le prochain flush
+            drained.values().forEach(pending::restore);
+            LOGGER.error("Erreur lors de l'écriture de l'activité de chat ({} utilisateurs): {}", drained.size(), e.getMessage(), e);
+            return;
+        }
+
+        try {
+            List<Document> users = userCollection.find(Filters.in("userId", drained.keySet()))
+                    .projection(Projections.include("userId", "currentRank", "reputation"))
+                    .into(new ArrayList<>());
+
+            List<WriteModel<Document>> scores = new ArrayList<>(users.size());
+            for (Document user : users) {
+                Document reputation = user.get("reputation", Document.class);
+                int reputationScore = ReputationManager.calculateReputation(user);
+                if (reputation.getInteger("reputationScore", 0) == reputationScore) continue;
+                scores.add(new UpdateOneModel<>(ReputationVersion.guard(user.getObjectId("_id"), ReputationVersion.of(user)),
+                        Updates.set("reputation.reputationScore", reputationScore)));
+                // Le document reflète le score calculé, qu'il ait été écrit ou dépassé par une activité plus récente
+                reputation.put("reputationScore", reputationScore);
+            }
+            if (!scores.isEmpty()) userCollection.bulkWrite(scores, new BulkWriteOptions().ordered(false));
+
+            for (Document user : users) {
+                try {
+                    onUserFlushed.accept(user);
+                } catch (Exception e) {
+                    LOGGER.error("Erreur après l'écriture de l'activité de {}: {}", user.getString("userId"), e.getMessage(), e);
+                }
+            }
+            LOGGER.debug("Activité de chat écrite pour {} utilisateurs en {} ms", drained.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Les compteurs sont déjà écrits : ne pas remettre en file pour éviter de les compter deux fois
+            LOGGER.error("Erreur lors du calcul des scores après l'activité de chat ({} utilisateurs): {}", drained.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Pipeline de mise à jour de l'activité de chat d'un utilisateur.
+     * Les messages du jour précédent (changement de jour pendant l'intervalle) sont appliqués avant ceux du jour ;
+     * toutes les expressions d'une même étape lisent les valeurs d'avant cette étape.
+     */
+    static List<Bson> chatActivityPipeline(ChatCounts delta) {
+        Document counters = new Document()
+                .append("reputation.messagesCount", increment("messagesCount", delta.messages()))
+                .append("reputation.tagsCount", increment("tagsCount", delta.tags()))
+                .append("reputation.responsesCount", increment("responsesCount", delta.responses()))
+                .append("reputation.lastActive", new Document("$max", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$reputation.lastActive", 0L)), delta.lastActive())))
+                .append(ReputationVersion.FIELD, ReputationVersion.next());
+        List<Bson> stages = new ArrayList<>(2);
+        stages.add(new Document("$set", counters));
+
+        Document daily = counters;
+        if (delta.previousDayMessages() > 0) {
+            appendDailyActivity(daily, delta.previousDay(), delta.previousDayMessages());
+            daily = new Document();
+            stages.add(new Document("$set", daily));
+        }
+        if (delta.dayMessages() > 0) appendDailyActivity(daily, delta.day(), delta.dayMessages());
+        if (daily.isEmpty()) stages.remove(stages.size() - 1);
+        return stages;
+    }
+
+    /**
+     * Ajoute à une étape $set les compteurs quotidiens après les messages d'un jour :
+     * premiers messages, nouveau jour (mise à jour de la moyenne et réinitialisation du compteur) ou même jour.
+     */
+    private static void appendDailyActivity(Document stage, long dayStart, int messages) {
+        Document lastMessageDay = new Document("$ifNull", Arrays.asList("$reputation.lastMessageDay", 0L));
+        Document dailyMessages = new Document("$ifNull", Arrays.asList("$reputation.dailyMessagesCount", 0));
+        Document avgDailyMessages = new Document("$ifNull", Arrays.asList("$reputation.avgDailyMessages", 0));
+        Document activeDays = new Document("$ifNull", Arrays.asList("$reputation.activeDaysCount", 0));
+        Document isFirstDay = new Document("$eq", Arrays.asList(lastMessageDay, 0L));
+        Document isNewDay = new Document("$lt", Arrays.asList(lastMessageDay, dayStart));
+
+        // Moyenne arrondie comme Math.round : floor(x + 0.5)
+        Document newAverage = new Document("$toInt", new Document("$floor", new Document("$add", Arrays.asList(
+                new Document("$divide", Arrays.asList(
+                        new Document("$add", Arrays.asList(new Document("$multiply", Arrays.asList(avgDailyMessages, activeDays)), dailyMessages)),
+                        new Document("$add", Arrays.asList(activeDays, 1)))),
+                0.5))));
+
+        stage.append("reputation.avgDailyMessages", new Document("$cond", Arrays.asList(isFirstDay, messages,
+                        new Document("$cond", Arrays.asList(isNewDay, newAverage, avgDailyMessages)))))
+                .append("reputation.activeDaysCount", new Document("$cond", Arrays.asList(isFirstDay, 1,
+                        new Document("$cond", Arrays.asList(isNewDay, new Document("$add", Arrays.asList(activeDays, 1)), activeDays)))))
+                // Les premiers messages sont aussi un nouveau jour (lastMessageDay vaut 0)
+                .append("reputation.dailyMessagesCount", new Document("$cond", Arrays.asList(isNewDay, messages,
+                        new Document("$add", Arrays.asList(dailyMessages, messages)))))
+                .append("reputation.lastMessageDay", new Document("$max", Arrays.asList(lastMessageDay, dayStart)));
+    }
+
+    private static Document increment(String field, int delta) {
+        return new Document("$add", Arrays.asList(new Document("$ifNull", Arrays.asList("$reputation." + field, 0)), delta));
+    }
+}
@@ -0,0 +1,260 @@
+package ca.lwi.trqcbot.ranks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compteurs d'activité de chat par utilisateur, indexés par le snowflake en long.
+ * Table à adressage ouvert en tableaux primitifs, découpée en segments verrouillés indépendamment :
+ * l'enregistrement d'un message ne fait aucune allocation (ni boxing, ni lambda, ni objet par utilisateur)
+ * et deux messages d'utilisateurs de segments différents ne se bloquent jamais.
+ * Les entrées ne vivent que jusqu'au prochain {@link #drain()} ; un segment resté peu utilisé rend sa mémoire.
+ */
+public class ChatActivityCounters {
+
+    private static final int STRIPES = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxPendingUsers;
+    private final Runnable onPressure;
+    private final AtomicBoolean pressureSignalled = new AtomicBoolean();
+
+    /**
+     * @param maxPendingUsers Nombre d'utilisateurs en attente au-delà duquel onPressure est appelé (une fois par drain)
+     * @param onPressure Demande d'écriture anticipée, appelée sur le thread qui enregistre le message
+     */
+    public ChatActivityCounters(int maxPendingUsers, Runnable onPressure) {
+        this.maxPendingUsers = maxPendingUsers;
+        this.onPressure = onPressure;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(INITIAL_STRIPE_CAPACITY);
+    }
+
+    /**
+     * Compteurs accumulés d'un utilisateur entre deux drains.
+     * @param day Jour (début, en millisecondes) des messages les plus récents
+     * @param previousDay Jour précédent, si l'intervalle a changé de jour
+     */
+    public record ChatCounts(long userId, int messages, int tags, int responses, long lastActive,
+                             long day, int dayMessages, long previousDay, int previousDayMessages) {}
+
+    /**
+     * Enregistre un message.
+     * @param userId Snowflake de l'auteur
+     * @param dayStart Début du jour du message, en millisecondes
+     * @param timestamp Instant du message, en millisecondes
+     */
+    public void record(long userId, long dayStart, long timestamp, boolean isTag, boolean isResponse) {
+        long hash = mix(userId);
+        boolean inserted;
+        Stripe stripe = stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+        synchronized (stripe) {
+            inserted = stripe.add(userId, (int) hash, dayStart, timestamp, isTag, isResponse);
+        }
+        if (inserted && size.incrementAndGet() >= maxPendingUsers && pressureSignalled.compareAndSet(false, true)) {
+            onPressure.run();
+        }
+    }
+
+    /**
+     * Remet des compteurs non écrits, fusionnés avec ceux accumulés depuis.
+     */
+    public void restore(ChatCounts counts) {
+        long hash = mix(counts.userId());
+        boolean inserted;
+        Stripe stripe = stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+        synchronized (stripe) {
+            inserted = stripe.merge(counts, (int) hash);
+        }
+        if (inserted) size.incrementAndGet();
+    }
+
+    /**
+     * @return Nombre d'utilisateurs en attente
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Retire et retourne tous les compteurs accumulés.
+     */
+    public List<ChatCounts> drain() {
+        List<ChatCounts> drained = new ArrayList<>(Math.max(size.get(), 16));
+        for (Stripe stripe : stripes) {
+            int removed;
+            synchronized (stripe) {
+                removed = stripe.drainTo(drained);
+            }
+            size.addAndGet(-removed);
+        }
+        pressureSignalled.set(false);
+        return drained;
+    }
+
+    // Finaliseur de MurmurHash3 : les bits de poids faible d'un snowflake varient peu
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    // Segment de la table : sondage linéaire, 0 marque une case vide (aucun snowflake ne vaut 0)
+    private static final class Stripe {
+        private long[] keys;
+        private int[] messages;
+        private int[] tags;
+        private int[] responses;
+        private long[] lastActive;
+        private long[] day;
+        private int[] dayMessages;
+        private long[] previousDay;
+        private int[] previousDayMessages;
+        private int used;
+
+        private Stripe(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            messages = new int[capacity];
+            tags = new int[capacity];
+            responses = new int[capacity];
+            lastActive = new long[capacity];
+            day = new long[capacity];
+            dayMessages = new int[capacity];
+            previousDay = new long[capacity];
+            previousDayMessages = new int[capacity];
+            used = 0;
+        }
+
+        /**
+         * @return Vrai si l'utilisateur vient d'être ajouté
+         */
+        private boolean add(long userId, int hash, long dayStart, long timestamp, boolean isTag, boolean isResponse) {
+            int slot = slotFor(userId, hash);
+            boolean inserted = keys[slot] == 0;
+            if (inserted) slot = insert(userId, hash, slot);
+
+            if (day[slot] != 0 && dayStart > day[slot]) {
+                // Changement de jour pendant l'intervalle : conserver le jour précédent séparément
+                previousDay[slot] = day[slot];
+                previousDayMessages[slot] += dayMessages[slot];
+                dayMessages[slot] = 0;
+            }
+            day[slot] = Math.max(day[slot], dayStart);
+            dayMessages[slot]++;
+            messages[slot]++;
+            if (isTag) tags[slot]++;
+            if (isResponse) responses[slot]++;
+            lastActive[slot] = Math.max(lastActive[slot], timestamp);
+            return inserted;
+        }
+
+        /**
+         * Fusionne des compteurs plus anciens avec l'entrée courante.
+         * @return Vrai si l'utilisateur vient d'être ajouté
+         */
+        private boolean merge(ChatCounts older, int hash) {
+            int slot = slotFor(older.userId(), hash);
+            boolean inserted = keys[slot] == 0;
+            if (inserted) slot = insert(older.userId(), hash, slot);
+
+            messages[slot] += older.messages();
+            tags[slot] += older.tags();
+            responses[slot] += older.responses();
+            lastActive[slot] = Math.max(lastActive[slot], older.lastActive());
+            if (inserted || day[slot] == older.day()) {
+                day[slot] = older.day();
+                dayMessages[slot] += older.dayMessages();
+                previousDay[slot] = Math.max(previousDay[slot], older.previousDay());
+                previousDayMessages[slot] += older.previousDayMessages();
+            } else if (older.day() > day[slot]) {
+                previousDay[slot] = day[slot];
+                previousDayMessages[slot] += dayMessages[slot] + older.previousDayMessages();
+                day[slot] = older.day();
+                dayMessages[slot] = older.dayMessages();
+            } else {
+                previousDay[slot] = Math.max(previousDay[slot], older.day());
+                previousDayMessages[slot] += older.dayMessages() + older.previousDayMessages();
+            }
+            return inserted;
+        }
+
+        private int drainTo(List<ChatCounts> target) {
+            int removed = used;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == 0) continue;
+                target.add(new ChatCounts(keys[slot], messages[slot], tags[slot], responses[slot], lastActive[slot],
+                        day[slot], dayMessages[slot], previousDay[slot], previousDayMessages[slot]));
+            }
+            // Rendre la mémoire d'un segment surdimensionné par un pic d'activité passé
+            if (keys.length > INITIAL_STRIPE_CAPACITY && removed * 8 < keys.length) {
+                allocate(Math.max(INITIAL_STRIPE_CAPACITY, Integer.highestOneBit(Math.max(1, removed * 4))));
+            } else {
+                clear();
+            }
+            return removed;
+        }
+
+        private void clear() {
+            Arrays.fill(keys, 0);
+            Arrays.fill(messages, 0);
+            Arrays.fill(tags, 0);
+            Arrays.fill(responses, 0);
+            Arrays.fill(lastActive, 0);
+            Arrays.fill(day, 0);
+            Arrays.fill(dayMessages, 0);
+            Arrays.fill(previousDay, 0);
+            Arrays.fill(previousDayMessages, 0);
+            used = 0;
+        }
+
+        // Case de la clé, ou première case vide de sa séquence de sondage
+        private int slotFor(long userId, int hash) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != 0 && keys[slot] != userId) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private int insert(long userId, int hash, int slot) {
+            if ((used + 1) * 2 > keys.length) {
+                grow();
+                slot = slotFor(userId, hash);
+            }
+            keys[slot] = userId;
+            used++;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMessages = messages, oldTags = tags, oldResponses = responses, oldDayMessages = dayMessages, oldPreviousDayMessages = previousDayMessages;
+            long[] oldLastActive = lastActive, oldDay = day, oldPreviousDay = previousDay;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = slotFor(oldKeys[i], (int) mix(oldKeys[i]));
+                keys[slot] = oldKeys[i];
+                messages[slot] = oldMessages[i];
+                tags[slot] = oldTags[i];
+                responses[slot] = oldResponses[i];
+                lastActive[slot] = oldLastActive[i];
+                day[slot] = oldDay[i];
+                dayMessages[slot] = oldDayMessages[i];
+                previousDay[slot] = oldPreviousDay[i];
+                previousDayMessages[slot] = oldPreviousDayMessages[i];
+                used++;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ca.lwi.trqcbot.ranks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Classement des joueurs maintenu en mémoire et mis à jour à chaque changement de réputation.
+ * Arbre d'ordre statistique (treap avec taille des sous-arbres) trié par score décroissant puis par ID,
+ * ce qui donne le top N, le rang d'un joueur et son voisinage en O(log n).
+ */
+public class LeaderboardIndex {
+
+    private final Map<String, Node> nodesByUser = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    /**
+     * Ajoute ou met à jour le score d'un utilisateur.
+     * @param userId ID de l'utilisateur
+     * @param score Score de réputation
+     */
+    public void update(String userId, int score) {
+        update(userId, score, 0);
+    }
+
+    /**
+     * Ajoute ou met à jour le score d'un utilisateur, sauf si le classement a déjà un score calculé
+     * sur une version plus récente de ses compteurs (les écritures concurrentes peuvent arriver dans le désordre).
+     * @param userId ID de l'utilisateur
+     * @param score Score de réputation
+     * @param version Version des compteurs sur laquelle le score a été calculé
+     */
+    public synchronized void update(String userId, int score, int version) {
+        Node existing = nodesByUser.get(userId);
+        if (existing != null) {
+            if (existing.version > version) return;
+            if (existing.score == score) {
+                existing.version = version;
+                return;
+            }
+            root = erase(root, existing.score, userId);
+        }
+        Node node = new Node(userId, score, version, random.nextInt());
+        nodesByUser.put(userId, node);
+        Node[] parts = split(root, score, userId);
+        root = merge(merge(parts[0], node), parts[1]);
+    }
+
+    /**
+     * Met à jour le score d'un utilisateur seulement s'il est déjà classé (ex: recalcul de tous les utilisateurs,
+     * qui ne doit pas réintégrer les membres ayant quitté le serveur).
+     * @param userId ID de l'utilisateur
+     * @param score Score de réputation
+     * @param version Version des compteurs sur laquelle le score a été calculé
+     */
+    public synchronized void updateIfPresent(String userId, int score, int version) {
+        if (nodesByUser.containsKey(userId)) update(userId, score, version);
+    }
+
+    /**
+     * @return Les IDs de tous les utilisateurs classés
+     */
+    public synchronized List<String> userIds() {
+        return new ArrayList<>(nodesByUser.keySet());
+    }
+
+    /**
+     * Retire un utilisateur du classement.
+     * @param userId ID de l'utilisateur
+     */
+    public synchronized void remove(String userId) {
+        Node existing = nodesByUser.remove(userId);
+        if (existing != null) root = erase(root, existing.score, userId);
+    }
+
+    /**
+     * Remplace tout le contenu du classement.
+     * @param scores Scores par ID d'utilisateur
+     * @param versions Version des compteurs par ID d'utilisateur (absente = 0)
+     */
+    public synchronized void rebuild(Map<String, Integer> scores, Map<String, Integer> versions) {
+        nodesByUser.clear();
+        root = null;
+        scores.forEach((userId, score) -> update(userId, score, versions.getOrDefault(userId, 0)));
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * @param userId ID de l'utilisateur
+     * @return Le rang (à partir de 1) de l'utilisateur, ou -1 s'il n'est pas classé
+     */
+    public synchronized int rankOf(String userId) {
+        Node target = nodesByUser.get(userId);
+        if (target == null) return -1;
+        int rank = 0;
+        Node current = root;
+        while (current != null) {
+            int cmp = compare(target.score, target.userId, current.score, current.userId);
+            if (cmp < 0) {
+                current = current.left;
+            } else {
+                rank += size(current.left);
+                if (cmp == 0) return rank + 1;
+                rank++;
+                current = current.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param fromIndex Position de départ (à partir de 0)
+     * @param count Nombre d'entrées
+     * @return Les entrées du classement dans l'intervalle demandé
+     */
+    public synchronized List<Entry> range(int fromIndex, int count) {
+        int total = size(root);
+        int start = Math.max(0, fromIndex);
+        int end = Math.min(total, start + Math.max(0, count));
+        if (start >= end) return Collections.emptyList();
+        List<Entry> entries = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            Node node = select(i);
+            entries.add(new Entry(node.userId, node.score, i + 1));
+        }
+        return entries;
+    }
+
+    /**
+     * @param count Nombre d'entrées
+     * @return Les meilleurs joueurs du classement
+     */
+    public List<Entry> top(int count) {
+        return range(0, count);
+    }
+
+    /**
+     * Retourne une fenêtre du classement centrée sur un utilisateur.
+     * @param userId ID de l'utilisateur recherché
+     * @param count Taille de la fenêtre
+     * @return Les entrées autour de l'utilisateur, ou une liste vide s'il n'est pas classé
+     */
+    public synchronized List<Entry> around(String userId, int count) {
+        int rank = rankOf(userId);
+        if (rank < 0) return Collections.emptyList();
+        int total = size(root);
+        int startIndex = Math.max(0, (rank - 1) - count / 2);
+        int endIndex = Math.min(total, startIndex + count);
+        if (endIndex == total && endIndex - startIndex < count) {
+            startIndex = Math.max(0, endIndex - count);
+        }
+        return range(startIndex, endIndex - startIndex);
+    }
+
+    private Node select(int index) {
+        Node current = root;
+        while (current != null) {
+            int leftSize = size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index == leftSize) {
+                return current;
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+        throw new IndexOutOfBoundsException("Index hors du classement: " + index);
+    }
+
+    // Ordre du classement : score décroissant, puis ID croissant pour départager
+    private static int compare(int scoreA, String userIdA, int scoreB, String userIdB) {
+        if (scoreA != scoreB) return scoreA > scoreB ? -1 : 1;
+        return userIdA.compareTo(userIdB);
+    }
+
+    // Sépare l'arbre en [clés < (score, userId)] et [clés >= (score, userId)]
+    private static Node[] split(Node node, int score, String userId) {
+        if (node == null) return new Node[]{null, null};
+        if (compare(node.score, node.userId, score, userId) < 0) {
+            Node[] parts = split(node.right, score, userId);
+            node.right = parts[0];
+            node.recompute();
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, score, userId);
+        node.left = parts[1];
+        node.recompute();
+        return new Node[]{parts[0], node};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.recompute();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.recompute();
+        return right;
+    }
+
+    private static Node erase(Node node, int score, String userId) {
+        if (node == null) return null;
+        int cmp = compare(score, userId, node.score, node.userId);
+        if (cmp == 0) return merge(node.left, node.right);
+        if (cmp < 0) {
+            node.left = erase(node.left, score, userId);
+        } else {
+            node.right = erase(node.right, score, userId);
+        }
+        node.recompute();
+        return node;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final String userId;
+        private final int score;
+        private final int priority;
+        private int version;
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(String userId, int score, int version, int priority) {
+            this.userId = userId;
+            this.score = score;
+            this.version = version;
+            this.priority = priority;
+        }
+
+        private void recompute() {
+            size = 1 + LeaderboardIndex.size(left) + LeaderboardIndex.size(right);
+        }
+    }
+
+    /**
+     * Entrée du classement.
+     * @param userId ID de l'utilisateur
+     * @param score Score de réputation
+     * @param rank Rang (à partir de 1)
+     */
+    public record Entry(String userId, int score, int rank) {}
+}
@@ -1,19 +1,35 @@
 package ca.lwi.trqcbot.ranks;
 
 import ca.lwi.trqcbot.Main;
+import ca.lwi.trqcbot.metrics.Metrics;
+import ca.lwi.trqcbot.repositories.UserRecord;
+import ca.lwi.trqcbot.repositories.UserRepository;
 import ca.lwi.trqcbot.reputation.ReputationManager;
 import ca.lwi.trqcbot.reputation.VoiceActivityTracker;
+import ca.lwi.trqcbot.reputation.VoiceHistoryBuffer;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import io.github.cdimascio.dotenv.Dotenv;
+import lombok.Getter;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.*;
-import net.dv8tion.jda.api.entities.channel.concrete.VoiceChannel;
 import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRemoveEvent;
 import net.dv8tion.jda.api.events.guild.voice.GuildVoiceUpdateEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -24,15 +40,24 @@ import java.util.concurrent.TimeUnit;
 public class RankManager extends ListenerAdapter {
 
     private final MongoCollection<Document> userCollection;
+    private final UserRepository userRepository;
+    // Lectures d'affichage (classements, cartes de joueur), pouvant être servies par un secondaire
+    private final UserRepository displayUserRepository;
     private final String guildId;
     private final String recrueRoleId;
     private final String joueurRoleId;
     private final String veteranRoleId;
-    private final Map<String, Integer> userActivityCounter = new HashMap<>();
     private final int activityThreshold;
+    private final ChatActivityBuffer chatActivityBuffer;
+    private final int chatFlushIntervalSeconds;
+    @Getter
+    private final LeaderboardIndex leaderboardIndex;
 
     private final VoiceActivityTracker voiceActivityTracker;
+    private final int voiceCheckpointIntervalSeconds;
     private final ScheduledExecutorService scheduler;
+    private final ReputationRecomputeJob reputationRecomputeJob;
+    private final RoleReconciler roleReconciler;
 
     public RankManager() {
         Dotenv dotenv = Dotenv.load();
@@ -41,10 +66,37 @@ public class RankManager extends ListenerAdapter {
         this.joueurRoleId = dotenv.get("JOUEUR_ROLE_ID");
         this.veteranRoleId = dotenv.get("VETERAN_ROLE_ID");
         this.activityThreshold = Integer.parseInt(dotenv.get("ACTIVITY_THRESHOLD"));
+        this.chatFlushIntervalSeconds = Integer.parseInt(dotenv.get("CHAT_FLUSH_INTERVAL_SECONDS", "30"));
         this.userCollection = Main.getMongoConnection().getDatabase().getCollection("users");
-        this.voiceActivityTracker = new VoiceActivityTracker();
+        this.userRepository = new UserRepository(Main.getMongoConnection().getDatabase());
+        this.displayUserRepository = new UserRepository(Main.getMongoConnection().getReadOnlyDatabase());
+        this.chatActivityBuffer = new ChatActivityBuffer(userCollection, this::onChatActivityFlushed,
+                Integer.parseInt(dotenv.get("CHAT_MAX_PENDING_USERS", "10000")), this::requestChatFlush);
+        this.leaderboardIndex = new LeaderboardIndex();
+        this.voiceCheckpointIntervalSeconds = Integer.parseInt(dotenv.get("VOICE_CHECKPOINT_INTERVAL_SECONDS", "60"));
+        this.voiceActivityTracker = new VoiceActivityTracker(Main.getMongoConnection().getDatabase().getCollection("voice_sessions"),
+                new VoiceHistoryBuffer(Main.getMongoConnection().getDatabase().getCollection("voice_activity")));
         this.scheduler = Executors.newScheduledThreadPool(1);
+        this.roleReconciler = new RoleReconciler(guildId, Map.of("Recrue", recrueRoleId, "Joueur", joueurRoleId, "Vétéran", veteranRoleId));
+        this.reputationRecomputeJob = ReputationRecomputeJob.fromEnv(dotenv, userRepository, userCollection, leaderboardIndex);
+        loadLeaderboardIndex();
         scheduleActivityChecks();
+        reputationRecomputeJob.start();
+    }
+
+    /**
+     * Charge le classement en mémoire à partir des scores enregistrés.
+     */
+    private void loadLeaderboardIndex() {
+        Map<String, Integer> scores = new HashMap<>();
+        Map<String, Integer> versions = new HashMap<>();
+        userRepository.forEach(Projections.include("userId", "reputation.reputationScore", ReputationVersion.FIELD), user -> {
+            if (user.userId() == null) return;
+            scores.put(user.userId(), user.reputation().reputationScore());
+            versions.put(user.userId(), user.reputation().version());
+        });
+        leaderboardIndex.rebuild(scores, versions);
+        System.out.println("Classement chargé: " + scores.size() + " joueurs.");
     }
 
     private void scheduleActivityChecks() {
@@ -53,9 +105,17 @@ public class RankManager extends ListenerAdapter {
 
         // Vérification des utilisateurs actuellement en vocal toutes les 30 minutes
         scheduler.scheduleAtFixedRate(this::checkActiveVoiceUsers, 5, 30, TimeUnit.MINUTES);
+
+        // Écriture groupée de l'activité de chat en attente
+        scheduler.scheduleAtFixedRate(this::flushChatActivity, chatFlushIntervalSeconds, chatFlushIntervalSeconds, TimeUnit.SECONDS);
+
+        // Sauvegarde des sessions vocales ouvertes pour les reprendre après un redémarrage
+        scheduler.scheduleAtFixedRate(voiceActivityTracker::checkpoint, voiceCheckpointIntervalSeconds, voiceCheckpointIntervalSeconds, TimeUnit.SECONDS);
     }
 
     public void shutdown() {
+        reputationRecomputeJob.shutdown();
+        roleReconciler.shutdown();
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
             try {
@@ -68,16 +128,15 @@ public class RankManager extends ListenerAdapter {
                 Thread.currentThread().interrupt();
             }
         }
+        // Écrire l'activité de chat restante et les sessions vocales avant la fermeture de MongoDB
+        flushChatActivity();
+        voiceActivityTracker.checkpoint();
     }
-    
+
     @Override
     public void onMessageReceived(@NotNull MessageReceivedEvent e) {
         if (e.getAuthor().isBot()) return;
-        String userId = e.getAuthor().getId();
-        userActivityCounter.put(userId, userActivityCounter.getOrDefault(userId, 0) + 1);
-        if (userActivityCounter.getOrDefault(userId, 0) % 5 == 0) {
-            updateChatActivity(e, userId);
-        }
+        chatActivityBuffer.record(e.getMessage(), e.getAuthor().getIdLong());
     }
 
     @Override
@@ -90,193 +149,224 @@ public class RankManager extends ListenerAdapter {
         if ((oldChannel != null && newChannel == null) || (oldChannel != null && (member.getVoiceState() != null && !member.getVoiceState().isSelfMuted() && member.getVoiceState().isSelfMuted()))) {
             int minutesSpent = voiceActivityTracker.getAndResetVoiceTime(userId);
             if (minutesSpent >= 5) updateVoiceActivity(userId, minutesSpent);
+            // Les minutes ne sont plus en attente : la sauvegarde ne doit pas les faire créditer à nouveau à la reprise
+            voiceActivityTracker.checkpoint(userId);
         }
     }
 
-    public void updateChatActivity(MessageReceivedEvent event, String userId) {
-        Document user = userCollection.find(new Document("userId", userId)).first();
-        if (user != null) {
-            Message message = event.getMessage();
-            String currentRank = user.getString("currentRank");
-
-            Document reputation = (Document) user.get("reputation");
-            if (reputation == null) reputation = new Document();
-
-            int messagesCount = reputation.getInteger("messagesCount", 0);
-            int responsesCount = reputation.getInteger("responsesCount", 0);
-            int tagsCount = reputation.getInteger("tagsCount", 0);
-
-            List<User> mentionedUsers = message.getMentions().getUsers();
-            if (mentionedUsers.stream().map(ISnowflake::getId).anyMatch(id -> !id.equals(userId) && id.equals(user.getString("userId")))) tagsCount++;
-
-            Message referencedMessage = message.getReferencedMessage();
-            if ((message.getContentRaw().contains("@") && !mentionedUsers.isEmpty()) || (referencedMessage != null && !referencedMessage.getAuthor().getId().equals(userId))) responsesCount++;
-
-            // Gestion des messages quotidiens
-            long currentTimestamp = System.currentTimeMillis();
-            long dayStart = currentTimestamp - (currentTimestamp % (1000 * 60 * 60 * 24));
-            long lastMessageDay = reputation.getLong("lastMessageDay") != null ? reputation.getLong("lastMessageDay") : 0;
-            int dailyMessagesCount = reputation.getInteger("dailyMessagesCount", 0);
-            int avgDailyMessages = reputation.getInteger("avgDailyMessages", 0);
-            int activeDaysCount = reputation.getInteger("activeDaysCount", 0);
-
-            // Nouveau jour = mise à jour de la moyenne et réinitialisation du compteur
-            if (lastMessageDay < dayStart && lastMessageDay > 0) {
-                // Mettre à jour la moyenne (moyenne historique avec une pondération plus forte pour les données récentes)
-                avgDailyMessages = (int) Math.round((avgDailyMessages * activeDaysCount + dailyMessagesCount) / (activeDaysCount + 1.0));
-                activeDaysCount++;
-                dailyMessagesCount = 1;  // Réinitialiser pour le nouveau jour
-            } else if (lastMessageDay == 0) {
-                // Premier message de l'utilisateur
-                avgDailyMessages = 1;
-                activeDaysCount = 1;
-                dailyMessagesCount = 1;
-            } else {
-                // Même jour, incrémenter le compteur
-                dailyMessagesCount++;
+    /**
+     * Remet au classement un membre déjà enregistré qui revient sur le serveur, avec son score enregistré.
+     * @param user Document de l'utilisateur
+     */
+    public void restoreToLeaderboard(Document user) {
+        Document reputation = user.get("reputation", Document.class);
+        int reputationScore = reputation != null ? reputation.getInteger("reputationScore", 0) : 0;
+        leaderboardIndex.update(user.getString("userId"), reputationScore, ReputationVersion.of(user));
+    }
+
+    @Override
+    public void onGuildMemberRemove(@NotNull GuildMemberRemoveEvent e) {
+        if (!e.getGuild().getId().equals(guildId)) return;
+        leaderboardIndex.remove(e.getUser().getId());
+    }
+
+    /**
+     * Retire du classement les utilisateurs enregistrés qui ne sont plus membres du serveur
+     * (départs pendant l'arrêt du bot). Le chargement des membres se fait hors du thread appelant.
+     * @param guild Serveur du bot
+     */
+    public void pruneLeaderboard(Guild guild) {
+        guild.loadMembers().onSuccess(members -> {
+            Set<String> memberIds = new HashSet<>(members.size());
+            for (Member member : members) memberIds.add(member.getId());
+            int removed = 0;
+            for (String userId : leaderboardIndex.userIds()) {
+                if (memberIds.contains(userId)) continue;
+                leaderboardIndex.remove(userId);
+                removed++;
             }
+            System.out.println("Classement: " + removed + " anciens membres retirés.");
+        }).onError(error -> System.err.println("Impossible de charger les membres pour le classement: " + error.getMessage()));
+    }
 
-            // Mettre à jour le sous-document reputation
-            Document updatedReputation = new Document("messagesCount", messagesCount + 5)
-                    .append("tagsCount", tagsCount)
-                    .append("responsesCount", responsesCount)
-                    .append("lastMessageDay", dayStart)
-                    .append("dailyMessagesCount", dailyMessagesCount)
-                    .append("avgDailyMessages", avgDailyMessages)
-                    .append("activeDaysCount", activeDaysCount)
-                    .append("lastActive", currentTimestamp);
-
-            // Calculer et ajouter le score de réputation
-            int reputationScore = ReputationManager.calculateReputation(user);
-            updatedReputation.append("reputationScore", reputationScore);
-
-            userCollection.updateOne(
-                    new Document("userId", userId),
-                    new Document("$set", new Document("reputation", updatedReputation))
-            );
-
-            if (messagesCount >= activityThreshold && currentRank.equals("Recrue")) promoteToJoueur(userId);
+    /**
+     * Écrit dans la base de données l'activité de chat accumulée en mémoire.
+     */
+    public void flushChatActivity() {
+        try {
+            chatActivityBuffer.flush();
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'écriture de l'activité de chat: " + e.getMessage());
         }
     }
 
-    public void updateVoiceActivity(String userId, int minutesSpent) {
-        Document user = userCollection.find(new Document("userId", userId)).first();
-        if (user == null) return;
-
-        Document reputation = (Document) user.get("reputation");
-        if (reputation == null) reputation = new Document();
+    // Trop d'utilisateurs en attente : écrire sans attendre le prochain intervalle, hors du thread de JDA
+    private void requestChatFlush() {
+        if (!scheduler.isShutdown()) scheduler.execute(this::flushChatActivity);
+    }
 
-        // Récupérer les statistiques vocales existantes ou initialiser
-        int totalVoiceMinutes = reputation.getInteger("totalVoiceMinutes", 0) + minutesSpent;
-        int dailyVoiceMinutes = reputation.getInteger("dailyVoiceMinutes", 0) + minutesSpent;
-        int voiceDaysActive = reputation.getInteger("voiceDaysActive", 0);
+    private void onChatActivityFlushed(Document user) {
+        Document reputation = user.get("reputation", Document.class);
+        int messagesCount = reputation != null ? reputation.getInteger("messagesCount", 0) : 0;
+        // Un membre parti entre l'enregistrement du message et l'écriture ne doit pas revenir au classement
+        if (reputation != null) leaderboardIndex.updateIfPresent(user.getString("userId"), reputation.getInteger("reputationScore", 0), ReputationVersion.of(user));
+        if (messagesCount >= activityThreshold && "Recrue".equals(user.getString("currentRank"))) promoteToJoueur(user.getString("userId"));
+    }
 
-        long dayStart = System.currentTimeMillis() - (System.currentTimeMillis() % (1000 * 60 * 60 * 24));
-        long lastVoiceDay = reputation.getLong("lastVoiceDay") != null ? reputation.getLong("lastVoiceDay") : 0;
+    /**
+     * Ajoute du temps vocal à un utilisateur en une seule mise à jour atomique, puis enregistre le score
+     * calculé sur le document tel qu'il est après la mise à jour (seulement s'il a changé, et seulement
+     * si aucune autre activité n'a modifié les compteurs entre-temps : voir {@link ReputationVersion}).
+     * @param userId ID de l'utilisateur
+     * @param minutesSpent Minutes passées en vocal
+     */
+    public void updateVoiceActivity(String userId, int minutesSpent) {
+        long now = System.currentTimeMillis();
+        Document user = userCollection.findOneAndUpdate(
+                Filters.eq("userId", userId),
+                voiceActivityPipeline(minutesSpent, now),
+                new FindOneAndUpdateOptions()
+                        .projection(Projections.include("userId", "currentRank", "reputation"))
+                        .returnDocument(ReturnDocument.AFTER));
+        if (user == null) return;
 
-        // Nouveau jour d'activité vocale
-        if (lastVoiceDay < dayStart) {
-            dailyVoiceMinutes = minutesSpent;
-            voiceDaysActive++;
+        Document reputation = user.get("reputation", Document.class);
+        int version = ReputationVersion.of(user);
+        int reputationScore = ReputationManager.calculateReputation(user);
+        if (reputation.getInteger("reputationScore", 0) != reputationScore) {
+            userCollection.updateOne(ReputationVersion.guard(user.getObjectId("_id"), version), Updates.set("reputation.reputationScore", reputationScore));
         }
+        leaderboardIndex.update(userId, reputationScore, version);
+    }
 
-        // Mise à jour des statistiques vocales
-        Document updatedReputation = new Document(reputation);
-        updatedReputation.put("totalVoiceMinutes", totalVoiceMinutes);
-        updatedReputation.put("dailyVoiceMinutes", dailyVoiceMinutes);
-        updatedReputation.put("voiceDaysActive", voiceDaysActive);
-        updatedReputation.put("lastVoiceDay", dayStart);
-        updatedReputation.put("lastActive", System.currentTimeMillis());
+    /**
+     * Ajoute le temps vocal de plusieurs utilisateurs en un bulkWrite non ordonné, puis relit les documents
+     * modifiés en une requête pour enregistrer les scores qui ont changé en un second bulkWrite
+     * (chacun conditionné à la version des compteurs sur laquelle il a été calculé).
+     * Les minutes des écritures en échec sont remises dans le tracker pour le prochain passage.
+     * @param minutesByUser Minutes à ajouter par ID d'utilisateur
+     */
+    public void flushVoiceActivity(Map<String, Integer> minutesByUser) {
+        if (minutesByUser.isEmpty()) return;
+        long start = System.currentTimeMillis();
+
+        // Même ordre que les écritures : l'index d'une erreur du bulkWrite désigne l'utilisateur
+        List<String> userIds = new ArrayList<>(minutesByUser.keySet());
+        List<WriteModel<Document>> increments = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            increments.add(new UpdateOneModel<>(Filters.eq("userId", userId), voiceActivityPipeline(minutesByUser.get(userId), start)));
+        }
+        Set<String> written = new HashSet<>(userIds);
+        try {
+            userCollection.bulkWrite(increments, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Les autres écritures ont été appliquées : seules celles en erreur sont remises dans le tracker
+            for (BulkWriteError error : e.getWriteErrors()) {
+                String userId = userIds.get(error.getIndex());
+                voiceActivityTracker.addVoiceTime(userId, minutesByUser.get(userId));
+                written.remove(userId);
+            }
+            System.err.println("Erreur lors de l'écriture de l'activité vocale (" + e.getWriteErrors().size() + "/" + userIds.size() + " utilisateurs): " + e.getMessage());
+            if (written.isEmpty()) return;
+        } catch (Exception e) {
+            minutesByUser.forEach(voiceActivityTracker::addVoiceTime);
+            System.err.println("Erreur lors de l'écriture de l'activité vocale (" + minutesByUser.size() + " utilisateurs): " + e.getMessage());
+            return;
+        }
 
-        // Recalculer la réputation
-        int reputationScore = ReputationManager.calculateReputation(user);
-        updatedReputation.put("reputationScore", reputationScore);
+        try {
+            List<WriteModel<Document>> scores = new ArrayList<>();
+            List<Document> users = userCollection.find(Filters.in("userId", written))
+                    .projection(Projections.include("userId", "currentRank", "reputation"))
+                    .into(new ArrayList<>());
+            int[] computed = new int[users.size()];
+            for (int i = 0; i < users.size(); i++) {
+                Document user = users.get(i);
+                Document reputation = user.get("reputation", Document.class);
+                computed[i] = ReputationManager.calculateReputation(user);
+                if (reputation.getInteger("reputationScore", 0) == computed[i]) continue;
+                scores.add(new UpdateOneModel<>(ReputationVersion.guard(user.getObjectId("_id"), ReputationVersion.of(user)),
+                        Updates.set("reputation.reputationScore", computed[i])));
+            }
+            if (!scores.isEmpty()) userCollection.bulkWrite(scores, new BulkWriteOptions().ordered(false));
+            // Un score calculé sur une version dépassée est ignoré par le classement
+            for (int i = 0; i < users.size(); i++) {
+                leaderboardIndex.update(users.get(i).getString("userId"), computed[i], ReputationVersion.of(users.get(i)));
+            }
+        } catch (Exception e) {
+            // Les minutes sont déjà écrites : ne pas les remettre dans le tracker pour éviter de les compter deux fois
+            System.err.println("Erreur lors du calcul des scores après l'activité vocale: " + e.getMessage());
+        } finally {
+            long duration = System.currentTimeMillis() - start;
+            Metrics.histogram("voice.flush").recordMillis(duration);
+            Metrics.counter("voice.flush.users").add(minutesByUser.size());
+            System.out.println("Activité vocale écrite pour " + minutesByUser.size() + " utilisateurs en " + duration + " ms");
+        }
+    }
 
-        userCollection.updateOne(
-                new Document("userId", userId),
-                new Document("$set", new Document("reputation", updatedReputation))
-        );
+    /**
+     * Pipeline de mise à jour du temps vocal, évalué par le serveur sur l'état courant du document.
+     * Toutes les expressions d'une même étape lisent les valeurs d'avant la mise à jour.
+     * @param minutesSpent Minutes à ajouter
+     * @param now Instant de l'activité, en millisecondes
+     */
+    static List<Bson> voiceActivityPipeline(int minutesSpent, long now) {
+        long dayStart = now - (now % (1000 * 60 * 60 * 24));
+        Document lastVoiceDay = new Document("$ifNull", Arrays.asList("$reputation.lastVoiceDay", 0L));
+        Document isNewDay = new Document("$lt", Arrays.asList(lastVoiceDay, dayStart));
+        return List.of(new Document("$set", new Document()
+                .append("reputation.totalVoiceMinutes", new Document("$add", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$reputation.totalVoiceMinutes", 0)), minutesSpent)))
+                // Nouveau jour d'activité vocale : le compteur quotidien repart de zéro
+                .append("reputation.dailyVoiceMinutes", new Document("$cond", Arrays.asList(isNewDay, minutesSpent,
+                        new Document("$add", Arrays.asList(new Document("$ifNull", Arrays.asList("$reputation.dailyVoiceMinutes", 0)), minutesSpent)))))
+                .append("reputation.voiceDaysActive", new Document("$add", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$reputation.voiceDaysActive", 0)),
+                        new Document("$cond", Arrays.asList(isNewDay, 1, 0)))))
+                .append("reputation.lastVoiceDay", new Document("$max", Arrays.asList(lastVoiceDay, dayStart)))
+                .append("reputation.lastActive", new Document("$max", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$reputation.lastActive", 0L)), now)))
+                .append(ReputationVersion.FIELD, ReputationVersion.next())));
     }
     
     public void promoteToJoueur(String userId) {
-        Guild guild = Main.getJda().getGuildById(guildId);
-        if (guild == null) return;
-
-        userCollection.updateOne(
-            new Document("userId", userId),
-            new Document("$set", new Document("currentRank", "Joueur"))
-        );
-        
-        // Attribuer le rôle Joueur et retirer le rôle Recrue
-        Member member = guild.retrieveMemberById(userId).complete();
-        if (member != null) {
-            Role joueurRole = guild.getRoleById(joueurRoleId);
-            Role recrueRole = guild.getRoleById(recrueRoleId);
-            
-            if (joueurRole != null) {
-                guild.addRoleToMember(UserSnowflake.fromId(userId), joueurRole).queue();
-            }
-            if (recrueRole != null) {
-                guild.removeRoleFromMember(UserSnowflake.fromId(userId), recrueRole).queue();
-            }
-            
-            // Notifier l'utilisateur
-            member.getUser().openPrivateChannel().queue(
-                channel -> channel.sendMessage("Félicitations ! Vous êtes maintenant un Joueur grâce à votre activité sur le serveur.").queue()
-            );
-        }
+        promote(userId, "Joueur", "Félicitations ! Vous êtes maintenant un Joueur grâce à votre activité sur le serveur.");
     }
 
     public void promoteToVeteran(String userId) {
-        Guild guild = Main.getJda().getGuildById(guildId);
-        if (guild == null) return;
-
-        // Mettre à jour le rang dans MongoDB
-        userCollection.updateOne(
-            new Document("userId", userId),
-            new Document("$set", new Document("currentRank", "Vétéran"))
-        );
-
-        // Attribuer le rôle Vétéran et retirer les autres rôles
-        Member member = guild.retrieveMemberById(userId).complete();
-        if (member != null) {
-            Role veteranRole = guild.getRoleById(veteranRoleId);
-            Role joueurRole = guild.getRoleById(joueurRoleId);
-            Role recrueRole = guild.getRoleById(recrueRoleId);
-
-            if (veteranRole != null) {
-                guild.addRoleToMember(UserSnowflake.fromId(userId), veteranRole).queue();
-            }
+        promote(userId, "Vétéran", "Félicitations ! Vous êtes maintenant un Vétéran grâce à votre abonnement à TheRockQC.");
+    }
 
-            // Retirer les rôles inférieurs
-            if (joueurRole != null && member.getRoles().contains(joueurRole)) {
-                guild.removeRoleFromMember(UserSnowflake.fromId(userId), joueurRole).queue();
-            }
-            if (recrueRole != null && member.getRoles().contains(recrueRole)) {
-                guild.removeRoleFromMember(UserSnowflake.fromId(userId), recrueRole).queue();
-            }
+    /**
+     * Enregistre le nouveau rang, puis demande l'application des rôles et la notification de l'utilisateur sans attendre Discord.
+     * @param rank Nouveau rang (currentRank)
+     * @param notification Message privé envoyé à l'utilisateur
+     */
+    private void promote(String userId, String rank, String notification) {
+        JDA jda = Main.getJda();
+        if (jda == null || jda.getGuildById(guildId) == null) return;
 
-            // Notifier l'utilisateur
-            member.getUser().openPrivateChannel().queue(
-                channel -> channel.sendMessage("Félicitations ! Vous êtes maintenant un Vétéran grâce à votre abonnement à TheRockQC.").queue()
-            );
-        }
+        userCollection.updateOne(Filters.eq("userId", userId), Updates.set("currentRank", rank));
+        // Rôles puis notification, au rythme de la file des rôles
+        roleReconciler.enqueue(userId, rank, notification);
     }
     
     private void checkUsersActivity() {
-        Guild guild = Main.getJda().getGuildById(guildId);
-        if (guild == null) return;
-        
-        for (Document user : userCollection.find()) {
+        JDA jda = Main.getJda();
+        if (jda == null || jda.getGuildById(guildId) == null) return;
+
+        // Seules les recrues ayant atteint le seuil sont lues ; les rôles sont appliqués en arrière-plan
+        int promoted = 0;
+        for (Document user : userCollection.find(Filters.and(Filters.eq("currentRank", "Recrue"), Filters.gte("reputation.messagesCount", activityThreshold)))
+                .projection(Projections.include("userId"))) {
             try {
-                String userId = user.getString("userId");
-                int messagesCount = user.getInteger("messagesCount", 0);
-                String currentRank = user.getString("currentRank");
-                if ("Recrue".equals(currentRank) && messagesCount >= activityThreshold) promoteToJoueur(userId);
+                promoteToJoueur(user.getString("userId"));
+                promoted++;
             } catch (Exception e) {
                 System.err.println("Erreur lors de la vérification de l'activité: " + e.getMessage());
             }
         }
+        if (promoted > 0) System.out.println(promoted + " recrues promues Joueur");
     }
 
     // Méthode pour vérifier les utilisateurs actuellement en vocal
@@ -288,20 +378,36 @@ public class RankManager extends ListenerAdapter {
         if (guild == null) return;
 
         Set<String> activeUsers = voiceActivityTracker.getActiveUsers();
+        Map<String, Integer> minutesByUser = new HashMap<>();
         for (String userId : activeUsers) {
             Member member = guild.getMemberById(userId);
             if (member == null) continue;
 
             // Vérifier si l'utilisateur est toujours dans un canal vocal et n'est pas muet
             if (member.getVoiceState() != null && member.getVoiceState().inAudioChannel() && !member.getVoiceState().isSelfMuted() && !member.getVoiceState().isGuildMuted()) {
-                int minutesSpent = voiceActivityTracker.getAndResetVoiceTime(userId);
-                if (minutesSpent > 0) updateVoiceActivity(userId, minutesSpent);
-
-                // Réinitialiser le tracker pour continuer le suivi
-                VoiceChannel currentChannel = (VoiceChannel) member.getVoiceState().getChannel();
-                voiceActivityTracker.trackVoiceActivity(member, null, currentChannel);
+                // Créditer les minutes du segment en cours sans fermer la session
+                int minutesSpent = voiceActivityTracker.drainVoiceTime(userId);
+                if (minutesSpent > 0) minutesByUser.put(userId, minutesSpent);
             }
         }
+        flushVoiceActivity(minutesByUser);
+        // Sauvegarder immédiatement pour ne pas recompter ces minutes après un redémarrage
+        voiceActivityTracker.checkpoint();
+    }
+
+    /**
+     * Reprend les sessions vocales sauvegardées et crédite les minutes des membres qui ont quitté le vocal
+     * pendant l'arrêt du bot. Exécuté hors du thread de JDA.
+     * @param guild Serveur du bot
+     */
+    public void resumeVoiceSessions(Guild guild) {
+        scheduler.execute(() -> {
+            try {
+                flushVoiceActivity(voiceActivityTracker.resume(guild));
+            } catch (Exception e) {
+                System.err.println("Erreur lors de la reprise des sessions vocales: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -312,6 +418,23 @@ public class RankManager extends ListenerAdapter {
         return userCollection.find(new Document("userId", userId)).first();
     }
 
+    /**
+     * Récupère les données d'un utilisateur pour affichage seulement (la lecture peut être servie par un secondaire)
+     * @return L'utilisateur, ou null s'il n'est pas enregistré
+     */
+    public UserRecord getUserDataForDisplay(String userId) {
+        return displayUserRepository.findByUserId(userId);
+    }
+
+    /**
+     * Récupère les données de plusieurs utilisateurs en une seule requête
+     * @param userIds IDs des utilisateurs
+     * @return Les utilisateurs trouvés, indexés par ID
+     */
+    public Map<String, UserRecord> getUsersData(Collection<String> userIds) {
+        return displayUserRepository.findForDisplay(userIds);
+    }
+
     /**
      * Récupère les données de tous les utilisateurs avec optimisation
      * @return Une liste contenant les documents des utilisateurs
@@ -0,0 +1,237 @@
+package ca.lwi.trqcbot.ranks;
+
+import ca.lwi.trqcbot.metrics.Metrics;
+import ca.lwi.trqcbot.repositories.UserRecord;
+import ca.lwi.trqcbot.repositories.UserRepository;
+import ca.lwi.trqcbot.reputation.ReputationManager;
+import ca.lwi.trqcbot.reputation.ReputationSnapshot;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import io.github.cdimascio.dotenv.Dotenv;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Recalcul nocturne de la réputation de tous les utilisateurs.
+ * Sans lui, un utilisateur silencieux garde son score indéfiniment : la pénalité d'inactivité
+ * n'est appliquée qu'au prochain message ou passage en vocal.
+ * Les utilisateurs sont lus avec un curseur et découpés en lots évalués en parallèle ;
+ * seuls les scores modifiés sont écrits, en un bulkWrite non ordonné par lot.
+ */
+public class ReputationRecomputeJob {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReputationRecomputeJob.class);
+    private static final Bson PROJECTION = Projections.include("userId", "currentRank", "reputation");
+
+    private final UserRepository userRepository;
+    private final MongoCollection<Document> userCollection;
+    private final LeaderboardIndex leaderboardIndex;
+    private final int threads;
+    private final int chunkSize;
+    private final LocalTime runAt;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    /**
+     * @param threads Nombre de lots évalués et écrits en même temps
+     * @param chunkSize Nombre d'utilisateurs par lot (et par bulkWrite)
+     * @param runAt Heure locale d'exécution quotidienne
+     */
+    public ReputationRecomputeJob(UserRepository userRepository, MongoCollection<Document> userCollection,
+                                  LeaderboardIndex leaderboardIndex, int threads, int chunkSize, LocalTime runAt) {
+        this.userRepository = userRepository;
+        this.userCollection = userCollection;
+        this.leaderboardIndex = leaderboardIndex;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.runAt = runAt;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reputation-recompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reputation-recompute-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ReputationRecomputeJob fromEnv(Dotenv dotenv, UserRepository userRepository,
+                                                 MongoCollection<Document> userCollection, LeaderboardIndex leaderboardIndex) {
+        int threads = Integer.parseInt(dotenv.get("REPUTATION_RECOMPUTE_THREADS", "2"));
+        int chunkSize = Integer.parseInt(dotenv.get("REPUTATION_RECOMPUTE_CHUNK_SIZE", "1000"));
+        LocalTime runAt = LocalTime.parse(dotenv.get("REPUTATION_RECOMPUTE_TIME", "04:00"));
+        return new ReputationRecomputeJob(userRepository, userCollection, leaderboardIndex, threads, chunkSize, runAt);
+    }
+
+    /**
+     * Planifie le recalcul tous les jours à l'heure configurée.
+     */
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(runAt);
+        if (!next.isAfter(now)) next = next.plusDays(1);
+        long initialDelay = Duration.between(now, next).toMillis();
+        scheduler.scheduleAtFixedRate(this::runSafely, initialDelay, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+        LOGGER.info("Recalcul de la réputation planifié à {} ({} threads, lots de {})", runAt, threads, chunkSize);
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (Exception e) {
+            LOGGER.error("Erreur lors du recalcul de la réputation: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recalcule tous les scores avec le même instant de référence et écrit ceux qui ont changé.
+     * Bloque jusqu'à la fin de tous les lots.
+     */
+    public void run() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        long now = start;
+        AtomicLong scanned = new AtomicLong();
+        AtomicLong changed = new AtomicLong();
+        AtomicInteger failedChunks = new AtomicInteger();
+        // Limite les lots en mémoire : le curseur attend qu'un thread se libère
+        Semaphore inFlight = new Semaphore(threads * 2);
+
+        AtomicInteger submitted = new AtomicInteger();
+        ChunkCollector collector = new ChunkCollector(chunk -> {
+            submit(chunk, now, inFlight, scanned, changed, failedChunks);
+            if (submitted.incrementAndGet() % 10 == 0) {
+                LOGGER.info("Recalcul de la réputation: {} utilisateurs lus, {} scores modifiés", scanned.get(), changed.get());
+            }
+        });
+        userRepository.forEach(PROJECTION, collector);
+        collector.finish();
+
+        // Attendre la fin de tous les lots
+        inFlight.acquire(threads * 2);
+        inFlight.release(threads * 2);
+
+        long duration = System.currentTimeMillis() - start;
+        Metrics.histogram("reputation.recompute.job").recordMillis(duration);
+        Metrics.counter("reputation.recompute.changed").add(changed.get());
+        LOGGER.info("Recalcul de la réputation terminé en {} ms: {} utilisateurs, {} scores modifiés, {} lots en erreur",
+                duration, scanned.get(), changed.get(), failedChunks.get());
+    }
+
+    private void submit(List<UserRecord> chunk, long now, Semaphore inFlight, AtomicLong scanned,
+                        AtomicLong changed, AtomicInteger failedChunks) {
+        inFlight.acquireUninterruptibly();
+        try {
+            workers.execute(() -> {
+                try {
+                    changed.addAndGet(recomputeChunk(chunk, now));
+                } catch (Exception e) {
+                    failedChunks.incrementAndGet();
+                    LOGGER.error("Erreur lors du recalcul d'un lot de {} utilisateurs: {}", chunk.size(), e.getMessage(), e);
+                } finally {
+                    scanned.addAndGet(chunk.size());
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Nombre de scores écrits
+     */
+    private int recomputeChunk(List<UserRecord> chunk, long now) {
+        ReputationSnapshot[] snapshots = new ReputationSnapshot[chunk.size()];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = ReputationSnapshot.fromUser(chunk.get(i));
+        }
+        int[] scores = new int[snapshots.length];
+        // Le parallélisme est déjà assuré par les lots
+        ReputationManager.scoreAll(snapshots, scores, now, false);
+
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        List<UserRecord> updated = new ArrayList<>();
+        List<Integer> updatedScores = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            UserRecord user = chunk.get(i);
+            if (scores[i] == user.reputation().reputationScore()) continue;
+            // La condition sur la version évite d'écraser un score recalculé entre-temps par l'activité
+            writes.add(new UpdateOneModel<>(
+                    ReputationVersion.guard(user.id(), user.reputation().version()),
+                    Updates.set("reputation.reputationScore", scores[i])));
+            updated.add(user);
+            updatedScores.add(scores[i]);
+        }
+        if (writes.isEmpty()) return 0;
+
+        BulkWriteResult result = userCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        // Le classement ignore les scores dont la version a été dépassée par l'activité
+        for (int i = 0; i < updated.size(); i++) {
+            UserRecord user = updated.get(i);
+            leaderboardIndex.updateIfPresent(user.userId(), updatedScores.get(i), user.reputation().version());
+        }
+        return result.getModifiedCount();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Regroupe les utilisateurs lus par le curseur en lots de taille fixe
+    private final class ChunkCollector implements Consumer<UserRecord> {
+        private final Consumer<List<UserRecord>> onChunk;
+        private List<UserRecord> chunk = new ArrayList<>(chunkSize);
+
+        private ChunkCollector(Consumer<List<UserRecord>> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        @Override
+        public void accept(UserRecord user) {
+            if (user.userId() == null) return;
+            chunk.add(user);
+            if (chunk.size() < chunkSize) return;
+            onChunk.accept(chunk);
+            chunk = new ArrayList<>(chunkSize);
+        }
+
+        private void finish() {
+            if (!chunk.isEmpty()) onChunk.accept(chunk);
+            chunk = new ArrayList<>(chunkSize);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ca.lwi.trqcbot.ranks;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+
+/**
+ * Version du sous-document "reputation", incrémentée par chaque mise à jour des compteurs d'activité.
+ * Un score est calculé sur un document relu à une version donnée et n'est écrit que si le document
+ * est toujours à cette version : un score calculé sur des compteurs périmés n'écrase jamais un score plus récent.
+ */
+final class ReputationVersion {
+
+    static final String FIELD = "reputation.version";
+
+    private ReputationVersion() {
+    }
+
+    /**
+     * @return Expression de pipeline donnant la version suivante (un document sans version est à 0)
+     */
+    static Document next() {
+        return new Document("$add", Arrays.asList(new Document("$ifNull", Arrays.asList("$" + FIELD, 0)), 1));
+    }
+
+    /**
+     * @param user Document utilisateur relu (avec le sous-document reputation)
+     * @return Version du document, 0 s'il n'en a pas encore
+     */
+    static int of(Document user) {
+        Document reputation = user.get("reputation", Document.class);
+        return reputation != null ? reputation.getInteger("version", 0) : 0;
+    }
+
+    /**
+     * @param id _id du document
+     * @param version Version sur laquelle le score a été calculé
+     * @return Filtre ne correspondant au document que s'il est toujours à cette version
+     */
+    static Bson guard(ObjectId id, int version) {
+        return Filters.and(Filters.eq("_id", id), version == 0 ? Filters.exists(FIELD, false) : Filters.eq(FIELD, version));
+    }
+}
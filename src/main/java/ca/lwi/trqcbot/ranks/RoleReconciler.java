@@ -0,0 +1,189 @@
+package ca.lwi.trqcbot.ranks;
+
+import ca.lwi.trqcbot.Main;
+import ca.lwi.trqcbot.metrics.Metrics;
+import ca.lwi.trqcbot.recovery.RecoveryPacer;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applique les rôles de rang (Recrue, Joueur, Vétéran) à partir du rang enregistré.
+ * Les demandes sont regroupées par membre (seul le dernier rang demandé compte) et traitées en arrière-plan
+ * au rythme de l'API Discord, avec un seul modifyMemberRoles par membre et aucun appel si les rôles sont déjà bons.
+ * Le rang est déjà enregistré quand la demande arrive : une demande en échec est remise en file avec un délai croissant
+ * (sauf si le membre a quitté le serveur), pour que les rôles finissent par correspondre au rang enregistré.
+ * Le message privé de promotion passe par la même file, donc au même rythme.
+ */
+public class RoleReconciler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoleReconciler.class);
+    private static final long RETRY_BASE_DELAY_MS = 30_000;
+    private static final long RETRY_MAX_DELAY_MS = 30 * 60_000;
+
+    private final String guildId;
+    // ID du rôle de chaque rang
+    private final Map<String, String> rankRoleIds;
+    private final Map<String, Request> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private final RecoveryPacer pacer;
+
+    /**
+     * @param guildId ID du serveur
+     * @param rankRoleIds ID du rôle de chaque rang, par nom de rang
+     */
+    public RoleReconciler(String guildId, Map<String, String> rankRoleIds) {
+        this.guildId = guildId;
+        this.rankRoleIds = Map.copyOf(rankRoleIds);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "role-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pacer = new RecoveryPacer("roles", scheduler, 250, 30_000);
+        Metrics.gauge("roles.pending", pending::size);
+    }
+
+    /**
+     * Demande de rôles d'un membre.
+     * @param rank Rang enregistré (currentRank)
+     * @param notification Message privé à envoyer une fois les rôles appliqués, ou null
+     * @param attempts Nombre d'essais déjà en échec
+     */
+    private record Request(String rank, String notification, int attempts) {}
+
+    /**
+     * Demande l'application des rôles d'un rang. Ne bloque pas : une demande déjà en attente pour ce membre est remplacée.
+     * @param userId ID du membre
+     * @param rank Rang enregistré (currentRank)
+     */
+    public void enqueue(String userId, String rank) {
+        enqueue(userId, rank, null);
+    }
+
+    /**
+     * Demande l'application des rôles d'un rang, suivie d'un message privé au membre.
+     * @param userId ID du membre
+     * @param rank Rang enregistré (currentRank)
+     * @param notification Message privé envoyé après l'application des rôles, ou null
+     */
+    public void enqueue(String userId, String rank, String notification) {
+        if (!rankRoleIds.containsKey(rank)) return;
+        // Une demande plus récente remplace le rang, sans perdre une notification pas encore envoyée
+        pending.merge(userId, new Request(rank, notification, 0), (previous, next) ->
+                next.notification() == null && previous.notification() != null ? new Request(next.rank(), previous.notification(), 0) : next);
+        if (running.compareAndSet(false, true)) startBatch();
+    }
+
+    private void startBatch() {
+        List<Map.Entry<String, Request>> batch = new ArrayList<>(pending.size());
+        for (String userId : new ArrayList<>(pending.keySet())) {
+            Request request = pending.remove(userId);
+            if (request != null) batch.add(Map.entry(userId, request));
+        }
+        if (batch.isEmpty()) {
+            running.set(false);
+            // Une demande arrivée entre le drain et la remise à zéro ne doit pas attendre la suivante
+            if (!pending.isEmpty() && running.compareAndSet(false, true)) startBatch();
+            return;
+        }
+        if (scheduler.isShutdown()) return;
+        pacer.start(batch, entry -> reconcile(entry.getKey(), entry.getValue()), this::startBatch);
+    }
+
+    /**
+     * @return Un futur complété quand Discord a répondu (ou immédiatement si rien n'est à changer)
+     */
+    private CompletableFuture<?> reconcile(String userId, Request request) {
+        JDA jda = Main.getJda();
+        Guild guild = jda != null ? jda.getGuildById(guildId) : null;
+        if (guild == null) return CompletableFuture.completedFuture(null);
+
+        return guild.retrieveMemberById(userId).submit().thenCompose(member -> {
+            List<Role> toAdd = new ArrayList<>(1);
+            List<Role> toRemove = new ArrayList<>(2);
+            computeChanges(guild, member, request.rank(), toAdd, toRemove);
+            CompletableFuture<Void> roles;
+            if (toAdd.isEmpty() && toRemove.isEmpty()) {
+                Metrics.counter("roles.unchanged").increment();
+                roles = CompletableFuture.completedFuture(null);
+            } else {
+                Metrics.counter("roles.reconciled").increment();
+                roles = guild.modifyMemberRoles(member, toAdd, toRemove).submit();
+            }
+            return request.notification() == null ? roles : roles.thenCompose(ignored -> notify(member, request.notification()));
+        }).whenComplete((result, error) -> {
+            if (error != null) retryLater(userId, request, error);
+        });
+    }
+
+    // Un échec du message privé (messages privés fermés) n'est pas réessayé : les rôles sont déjà appliqués
+    private CompletableFuture<Void> notify(Member member, String notification) {
+        return member.getUser().openPrivateChannel()
+                .flatMap(channel -> channel.sendMessage(notification))
+                .submit()
+                .handle((message, error) -> {
+                    if (error != null) LOGGER.warn("Impossible de notifier {} de sa promotion: {}", member.getId(), error.getMessage());
+                    return null;
+                });
+    }
+
+    private void retryLater(String userId, Request request, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ErrorResponseException response && response.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER) {
+            LOGGER.info("Rang {} non appliqué à {}: le membre a quitté le serveur", request.rank(), userId);
+            return;
+        }
+        long delay = Math.min(RETRY_MAX_DELAY_MS, RETRY_BASE_DELAY_MS << Math.min(request.attempts(), 10));
+        LOGGER.warn("Impossible d'appliquer le rang {} à {} (essai {}), nouvel essai dans {} s: {}",
+                request.rank(), userId, request.attempts() + 1, delay / 1000, cause.getMessage());
+        Metrics.counter("roles.retried").increment();
+        if (scheduler.isShutdown()) return;
+        scheduler.schedule(() -> {
+            // Une demande arrivée entre-temps est plus récente : elle a priorité
+            if (pending.putIfAbsent(userId, new Request(request.rank(), request.notification(), request.attempts() + 1)) == null
+                    && running.compareAndSet(false, true)) {
+                startBatch();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // Rôle du rang à ajouter s'il manque, autres rôles de rang à retirer
+    private void computeChanges(Guild guild, Member member, String rank, List<Role> toAdd, List<Role> toRemove) {
+        String desiredRoleId = rankRoleIds.get(rank);
+        Role desired = desiredRoleId != null ? guild.getRoleById(desiredRoleId) : null;
+        if (desired != null && !member.getRoles().contains(desired)) toAdd.add(desired);
+        for (Role role : member.getRoles()) {
+            if (!role.equals(desired) && rankRoleIds.containsValue(role.getId())) toRemove.add(role);
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
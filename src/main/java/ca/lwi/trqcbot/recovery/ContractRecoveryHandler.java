@@ -2,6 +2,8 @@ package ca.lwi.trqcbot.recovery;
 
 import ca.lwi.trqcbot.Main;
 import ca.lwi.trqcbot.contracts.ContractsManager;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import io.github.cdimascio.dotenv.Dotenv;
 import lombok.Getter;
 import net.dv8tion.jda.api.entities.Guild;
@@ -12,7 +14,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -42,69 +46,51 @@ public class ContractRecoveryHandler {
 
     private void recoverMembersWithoutContracts(Guild guild) {
         LOGGER.info("Recherche des membres sans contrat dans la base de données...");
-        // Récupérer tous les membres du serveur
-        guild.loadMembers().onSuccess(members -> {
-            List<Member> membersWithoutContracts = new ArrayList<>();
-
-            for (Member member : members) {
-                if (member.getUser().isBot()) continue;
-                Document userData = Main.getRankManager().getUserData(member.getId());
-                boolean hasActiveContract = false;
-                if (userData != null && userData.containsKey("contract")) {
-                    Document contract = (Document) userData.get("contract");
-                    hasActiveContract = contract != null && "active".equals(contract.getString("status"));
-                }
-                if (!hasActiveContract) {
-                    membersWithoutContracts.add(member);
+        // Récupérer tous les membres du serveur, puis comparer en mémoire hors du thread de JDA
+        guild.loadMembers().onSuccess(members -> scheduler.execute(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                Map<String, Document> usersWithoutContract = loadUsersWithoutActiveContract();
+                List<Document> toCreate = new ArrayList<>();
+                for (Member member : members) {
+                    if (member.getUser().isBot()) continue;
+                    Document user = usersWithoutContract.get(member.getId());
+                    if (user == null) continue;
+                    if (user.getString("teamName") == null || user.getDate("joinDate") == null) {
+                        LOGGER.warn("Contrat d'entrée impossible pour {} ({}): équipe ou date d'arrivée manquante",
+                                member.getEffectiveName(), member.getId());
+                        continue;
+                    }
+                    toCreate.add(user);
                     LOGGER.info("Membre sans contrat trouvé: {} ({})", member.getEffectiveName(), member.getId());
                 }
-            }
 
-            LOGGER.info("Nombre total de membres à traiter: {}", membersWithoutContracts.size());
-            if (!membersWithoutContracts.isEmpty()) {
-                processMembersWithoutContractsWithDelay(membersWithoutContracts, 0);
-            } else {
-                LOGGER.info("Tous les membres ont déjà un contrat actif.");
-            }
-        });
-    }
-
-    private void processMembersWithoutContractsWithDelay(List<Member> members, int index) {
-        if (index >= members.size()) {
-            LOGGER.info("Traitement des contrats terminé. {} contrats créés.", members.size());
-            return;
-        }
-        Member member = members.get(index);
-        try {
-            Document userData = Main.getRankManager().getUserData(member.getId());
-            boolean hasActiveContract = false;
-            if (userData != null && userData.containsKey("contract")) {
-                Document contract = (Document) userData.get("contract");
-                hasActiveContract = contract != null && "active".equals(contract.getString("status"));
-            }
-            if (!hasActiveContract) {
-                LOGGER.info("Création d'un contrat d'entrée pour: {}", member.getEffectiveName());
-                createEntryContractWithJoinDate(member);
-            } else {
-                LOGGER.info("L'utilisateur {} a déjà un contrat actif - aucun contrat créé", member.getEffectiveName());
+                LOGGER.info("Nombre total de membres à traiter: {}", toCreate.size());
+                if (toCreate.isEmpty()) {
+                    LOGGER.info("Tous les membres ont déjà un contrat actif.");
+                    return;
+                }
+                int created = contractsManager.generateEntryContracts(toCreate);
+                LOGGER.info("Traitement des contrats terminé. {} contrats créés en {} ms.", created, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                LOGGER.error("Erreur lors de la création des contrats d'entrée: {}", e.getMessage(), e);
             }
-        } catch (Exception e) {
-            LOGGER.error("Erreur lors de la création du contrat pour {}: {}", member.getEffectiveName(), e.getMessage(), e);
-        }
-        scheduler.schedule(() -> processMembersWithoutContractsWithDelay(members, index + 1), 2, TimeUnit.SECONDS);
+        })).onError(error -> LOGGER.error("Impossible de charger les membres du serveur: {}", error.getMessage()));
     }
 
     /**
-     * Crée un contrat d'entrée en prenant en compte la date d'arrivée du membre
-     * @param member Le membre pour lequel créer un contrat
+     * Les membres absents de la base sont pris en charge par MemberRecoveryHandler, qui leur attribue une équipe.
+     * @return Les utilisateurs sans contrat actif, indexés par userId, en une seule requête projetée
      */
-    private void createEntryContractWithJoinDate(Member member) {
-        Document contract = contractsManager.generateEntryContract(member);
-        if (contract == null) {
-            LOGGER.error("Échec de la création du contrat d'entrée pour: {}", member.getEffectiveName());
-            return;
+    private Map<String, Document> loadUsersWithoutActiveContract() {
+        Map<String, Document> users = new HashMap<>();
+        for (Document user : Main.getMongoConnection().getDatabase().getCollection("users")
+                .find(Filters.ne("contract.status", "active"))
+                .projection(Projections.fields(Projections.include("userId", "teamName", "joinDate"), Projections.excludeId()))) {
+            String userId = user.getString("userId");
+            if (userId != null) users.put(userId, user);
         }
-        LOGGER.info("Contrat d'entrée créé pour {} avec l'équipe {}", member.getEffectiveName(), contract.getString("teamName"));
+        return users;
     }
 
     /**
@@ -2,6 +2,8 @@ package ca.lwi.trqcbot.recovery;
 
 import ca.lwi.trqcbot.Main;
 import ca.lwi.trqcbot.draft.DraftMessageHandler;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.UpdateOptions;
 import io.github.cdimascio.dotenv.Dotenv;
 import net.dv8tion.jda.api.entities.Guild;
@@ -13,8 +15,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -25,11 +29,13 @@ public class MemberRecoveryHandler extends ListenerAdapter {
     private final String guildId;
     private final DraftMessageHandler draftHandler;
     private final ScheduledExecutorService scheduler;
+    private final RecoveryPacer pacer;
 
     public MemberRecoveryHandler() {
         this.guildId = Dotenv.load().get("GUILD_ID");
         this.draftHandler = new DraftMessageHandler();
         this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.pacer = new RecoveryPacer("members", scheduler, 250, 30_000);
     }
 
     public void init(Guild guild) {
@@ -45,42 +51,49 @@ public class MemberRecoveryHandler extends ListenerAdapter {
     private void recoverMissingMembers(Guild guild) {
         LOGGER.info("Recherche des membres non enregistrés dans la base de données...");
 
-        // Récupérer tous les membres du serveur
-        guild.loadMembers().onSuccess(members -> {
-            List<Member> unregisteredMembers = new ArrayList<>();
-
-            for (Member member : members) {
-                if (member.getUser().isBot()) continue;
-                Document userData = Main.getMongoConnection().getDatabase().getCollection("users").find(new Document("userId", member.getId())).first();
-                if (userData == null || !userData.containsKey("teamName")) {
-                    unregisteredMembers.add(member);
-                    LOGGER.info("Membre non enregistré trouvé: {} ({})", member.getEffectiveName(), member.getId());
+        // Récupérer tous les membres du serveur, puis comparer en mémoire hors du thread de JDA
+        guild.loadMembers().onSuccess(members -> scheduler.execute(() -> {
+            try {
+                Set<String> registeredIds = loadRegisteredUserIds();
+                List<Member> unregisteredMembers = new ArrayList<>();
+                for (Member member : members) {
+                    if (member.getUser().isBot()) continue;
+                    if (!registeredIds.contains(member.getId())) {
+                        unregisteredMembers.add(member);
+                        LOGGER.info("Membre non enregistré trouvé: {} ({})", member.getEffectiveName(), member.getId());
+                    }
                 }
+                LOGGER.info("Nombre total de membres à traiter: {}", unregisteredMembers.size());
+                if (!unregisteredMembers.isEmpty()) {
+                    processUnregisteredMembers(guild, unregisteredMembers);
+                } else {
+                    LOGGER.info("Tous les membres sont déjà enregistrés dans la base de données.");
+                }
+            } catch (Exception e) {
+                LOGGER.error("Erreur lors de la recherche des membres non enregistrés: {}", e.getMessage(), e);
             }
-            LOGGER.info("Nombre total de membres à traiter: {}", unregisteredMembers.size());
-            if (!unregisteredMembers.isEmpty()) {
-                processUnregisteredMembersWithDelay(guild, unregisteredMembers, 0);
-            } else {
-                LOGGER.info("Tous les membres sont déjà enregistrés dans la base de données.");
-            }
-        });
+        })).onError(error -> LOGGER.error("Impossible de charger les membres du serveur: {}", error.getMessage()));
     }
 
-    private void processUnregisteredMembersWithDelay(Guild guild, List<Member> members, int index) {
-        if (index >= members.size()) {
-            LOGGER.info("Traitement des membres terminé. {} membres récupérés.", members.size());
-            return;
+    /**
+     * @return Les IDs des utilisateurs qui ont déjà une équipe, en une seule requête projetée
+     */
+    private Set<String> loadRegisteredUserIds() {
+        Set<String> registeredIds = new HashSet<>();
+        for (Document user : Main.getMongoConnection().getDatabase().getCollection("users")
+                .find(Filters.exists("teamName"))
+                .projection(Projections.fields(Projections.include("userId"), Projections.excludeId()))) {
+            String userId = user.getString("userId");
+            if (userId != null) registeredIds.add(userId);
         }
+        return registeredIds;
+    }
 
-        Member member = members.get(index);
-
-        try {
+    private void processUnregisteredMembers(Guild guild, List<Member> members) {
+        pacer.start(members, member -> {
             LOGGER.info("Attribution d'une équipe pour le membre non enregistré: {}", member.getEffectiveName());
-            draftHandler.createMessage(guild, member);
-        } catch (Exception e) {
-            LOGGER.error("Erreur lors du traitement du membre {}: {}", member.getEffectiveName(), e.getMessage(), e);
-        }
-        scheduler.schedule(() -> processUnregisteredMembersWithDelay(guild, members, index + 1), 2, TimeUnit.SECONDS);
+            return draftHandler.createMessage(guild, member);
+        }, () -> LOGGER.info("Traitement des membres terminé. {} membres récupérés.", members.size()));
     }
 
     private void updateLastOnlineTime() {
@@ -0,0 +1,99 @@
+package ca.lwi.trqcbot.recovery;
+
+import ca.lwi.trqcbot.metrics.Metrics;
+import net.dv8tion.jda.api.exceptions.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Traite une file de récupération un élément à la fois, au rythme de l'API Discord.
+ * Chaque tâche retourne un futur complété par la réponse de Discord : JDA retarde ces réponses
+ * selon les en-têtes de limite de débit (buckets, Retry-After), donc une réponse lente ou un 429
+ * ralentit la file, et des réponses rapides la font accélérer jusqu'au délai minimal.
+ */
+public class RecoveryPacer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecoveryPacer.class);
+    // Au-delà, JDA a attendu la réinitialisation d'un bucket avant d'envoyer la requête
+    private static final long THROTTLED_MS = 1_000;
+    private static final long TASK_TIMEOUT_SECONDS = 60;
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private long delayMs;
+
+    /**
+     * @param name Nom de la file (journaux et métriques)
+     * @param scheduler Exécuteur des tâches
+     * @param minDelayMs Délai minimal entre deux tâches
+     * @param maxDelayMs Délai maximal entre deux tâches
+     */
+    public RecoveryPacer(String name, ScheduledExecutorService scheduler, long minDelayMs, long maxDelayMs) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.delayMs = minDelayMs;
+    }
+
+    /**
+     * Lance le traitement de la file.
+     * @param items Éléments à traiter, dans l'ordre
+     * @param task Traitement d'un élément, complété quand Discord a répondu
+     * @param onDone Appelé une fois tous les éléments traités
+     */
+    public <T> void start(List<T> items, Function<T, CompletableFuture<?>> task, Runnable onDone) {
+        scheduler.execute(() -> runNext(items, 0, task, onDone));
+    }
+
+    private <T> void runNext(List<T> items, int index, Function<T, CompletableFuture<?>> task, Runnable onDone) {
+        if (index >= items.size()) {
+            onDone.run();
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<?> future;
+        try {
+            future = task.apply(items.get(index));
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.orTimeout(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((result, error) -> {
+            long elapsed = System.currentTimeMillis() - start;
+            Metrics.histogram("recovery." + name).recordMillis(elapsed);
+            long nextDelay = adjust(elapsed, error);
+            if (error != null) LOGGER.warn("Récupération {} : élément {} en erreur: {}", name, index, unwrap(error).getMessage());
+            if (scheduler.isShutdown()) return;
+            scheduler.schedule(() -> runNext(items, index + 1, task, onDone), nextDelay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private synchronized long adjust(long elapsed, Throwable error) {
+        Throwable cause = error != null ? unwrap(error) : null;
+        if (cause instanceof RateLimitedException limited) {
+            // Limite atteinte malgré la file de JDA : attendre au moins le Retry-After indiqué
+            delayMs = Math.min(maxDelayMs, Math.max(delayMs * 2, limited.getRetryAfter()));
+            Metrics.counter("recovery." + name + ".rate_limited").increment();
+        } else if (elapsed > THROTTLED_MS) {
+            delayMs = Math.min(maxDelayMs, delayMs * 2);
+        } else {
+            delayMs = Math.max(minDelayMs, delayMs / 2);
+        }
+        return delayMs;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
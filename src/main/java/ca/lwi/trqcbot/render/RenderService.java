@@ -0,0 +1,161 @@
+package ca.lwi.trqcbot.render;
+
+import ca.lwi.trqcbot.metrics.LatencyHistogram;
+import ca.lwi.trqcbot.metrics.Metrics;
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service partagé de génération d'images (cartes, classements, contrats, repêchage, alignements).
+ * Les rendus s'exécutent sur un pool borné dimensionné au nombre de cœurs. Les demandes identiques
+ * en cours sont regroupées en un seul rendu, et les nouvelles demandes sont refusées quand la file est pleine.
+ */
+public class RenderService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderService.class);
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final LatencyHistogram queueWait = Metrics.histogram("render.queue_wait");
+
+    /**
+     * @param threads Nombre de threads de rendu
+     * @param queueCapacity Nombre maximal de rendus en attente avant de refuser les demandes
+     */
+    public RenderService(int threads, int queueCapacity) {
+        int poolSize = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread thread = new Thread(r, "render-" + counter.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        Metrics.gauge("render.queue_depth", () -> executor.getQueue().size());
+        Metrics.gauge("render.active", executor::getActiveCount);
+        LOGGER.info("Service de rendu: {} threads, {} rendus max en attente", poolSize, queueCapacity);
+    }
+
+    /**
+     * Crée le service à partir de la configuration (.env) :
+     * RENDER_THREADS (par défaut le nombre de cœurs) et RENDER_QUEUE_CAPACITY.
+     */
+    public static RenderService fromEnv(Dotenv dotenv) {
+        int threads = Integer.parseInt(dotenv.get("RENDER_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int queueCapacity = Integer.parseInt(dotenv.get("RENDER_QUEUE_CAPACITY", "32"));
+        return new RenderService(threads, queueCapacity);
+    }
+
+    /**
+     * Construit une clé de regroupement à partir de tout ce qui détermine le contenu de l'image.
+     * @param parts Valeurs utilisées par le rendu
+     * @return La clé
+     */
+    public static String key(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) sb.append(part).append(KEY_SEPARATOR);
+        return sb.toString();
+    }
+
+    /**
+     * Soumet un rendu au pool.
+     * Le futur échoue avec une RejectedExecutionException si le service est saturé.
+     * @param template Nom du modèle d'image (utilisé pour les métriques)
+     * @param key Clé de regroupement (voir {@link #key(Object...)}), ou null pour ne pas regrouper
+     * @param renderer Génération de l'image en PNG
+     * @return Les octets de l'image
+     */
+    public CompletableFuture<byte[]> render(String template, String key, Callable<byte[]> renderer) {
+        if (key == null) return submit(template, renderer);
+
+        String flightKey = template + KEY_SEPARATOR + key;
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(flightKey, created);
+        if (existing != null) {
+            Metrics.counter("render.coalesced").increment();
+            return existing;
+        }
+
+        submit(template, renderer).whenComplete((bytes, error) -> {
+            inFlight.remove(flightKey, created);
+            if (error != null) created.completeExceptionally(error);
+            else created.complete(bytes);
+        });
+        return created;
+    }
+
+    /**
+     * Variante bloquante pour les traitements en arrière-plan (envois groupés), qui attend
+     * une place dans la file au lieu d'être refusée.
+     * @param template Nom du modèle d'image
+     * @param key Clé de regroupement, ou null
+     * @param renderer Génération de l'image en PNG
+     * @return Les octets de l'image
+     */
+    public byte[] renderAndWait(String template, String key, Callable<byte[]> renderer) throws Exception {
+        while (true) {
+            try {
+                return render(template, key, renderer).join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof RejectedExecutionException)) {
+                    if (e.getCause() instanceof Exception cause) throw cause;
+                    throw e;
+                }
+                if (executor.isShutdown()) throw (RejectedExecutionException) e.getCause();
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private CompletableFuture<byte[]> submit(String template, Callable<byte[]> renderer) {
+        LatencyHistogram latency = Metrics.histogram("render." + template);
+        long enqueuedAt = System.nanoTime();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                queueWait.recordSince(enqueuedAt);
+                long start = System.nanoTime();
+                try {
+                    future.complete(renderer.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    latency.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Metrics.counter("render.rejected").increment();
+            LOGGER.warn("Rendu {} refusé: service de rendu saturé", template);
+            future.completeExceptionally(new RejectedExecutionException("Le service de rendu est saturé, réessayez dans un instant.", e));
+        }
+        return future;
+    }
+
+    /**
+     * Arrête le pool en laissant les rendus en cours se terminer.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ca.lwi.trqcbot.repositories;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Lecture et écriture tolérantes des champs primitifs pour les codecs des dépôts.
+ * Les anciens documents n'ont pas toujours le même type pour un même champ (Int32/Int64/Double, Date/Long) :
+ * chaque lecture accepte toutes les variantes rencontrées et retombe sur une valeur par défaut.
+ */
+final class BsonFields {
+
+    private BsonFields() {}
+
+    static int readInt(BsonReader reader) {
+        return (int) readLong(reader);
+    }
+
+    static long readLong(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            case DATE_TIME:
+                return reader.readDateTime();
+            default:
+                reader.skipValue();
+                return 0;
+        }
+    }
+
+    static double readDouble(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case DOUBLE:
+                return reader.readDouble();
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            default:
+                reader.skipValue();
+                return 0;
+        }
+    }
+
+    static boolean readBoolean(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.BOOLEAN) return reader.readBoolean();
+        reader.skipValue();
+        return false;
+    }
+
+    static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) return reader.readString();
+        reader.skipValue();
+        return null;
+    }
+
+    static ObjectId readObjectId(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.OBJECT_ID) return reader.readObjectId();
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * Accepte une date BSON ou un timestamp en millisecondes.
+     */
+    static Date readDate(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case DATE_TIME:
+                return new Date(reader.readDateTime());
+            case INT64:
+                return new Date(reader.readInt64());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) writer.writeString(name, value);
+    }
+
+    static void writeDate(BsonWriter writer, String name, Date value) {
+        if (value != null) writer.writeDateTime(name, value.getTime());
+    }
+}
@@ -0,0 +1,134 @@
+package ca.lwi.trqcbot.repositories;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Document de la collection contract_offers : les offres envoyées à un utilisateur et leur échéance.
+ */
+public record ContractOfferRecord(ObjectId id, String userId, List<Offer> offers, Date createdAt, Date expiresAt, String status) {
+
+    /**
+     * @param teamName Nom de l'équipe
+     * @return L'offre de cette équipe, ou null si elle n'en fait pas partie
+     */
+    public Offer offerFor(String teamName) {
+        for (Offer offer : offers) {
+            if (offer.teamName().equals(teamName)) return offer;
+        }
+        return null;
+    }
+
+    /**
+     * Une offre d'équipe.
+     * @param salary Salaire annuel en millions
+     */
+    public record Offer(String teamName, int years, double salary, String contractType, boolean hasNTC, boolean hasNMC,
+                        String ntcDetails, String nmcDetails) {}
+
+    static final class ContractOfferCodec implements Codec<ContractOfferRecord> {
+
+        @Override
+        public ContractOfferRecord decode(BsonReader reader, DecoderContext decoderContext) {
+            ObjectId id = null;
+            String userId = null, status = null;
+            List<Offer> offers = Collections.emptyList();
+            Date createdAt = null, expiresAt = null;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "_id" -> id = BsonFields.readObjectId(reader);
+                    case "userId" -> userId = BsonFields.readString(reader);
+                    case "status" -> status = BsonFields.readString(reader);
+                    case "createdAt" -> createdAt = BsonFields.readDate(reader);
+                    case "expiresAt" -> expiresAt = BsonFields.readDate(reader);
+                    case "offers" -> offers = readOffers(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            return new ContractOfferRecord(id, userId, offers, createdAt, expiresAt, status);
+        }
+
+        private List<Offer> readOffers(BsonReader reader) {
+            if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+                reader.skipValue();
+                return Collections.emptyList();
+            }
+            List<Offer> offers = new ArrayList<>(3);
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+                    reader.skipValue();
+                    continue;
+                }
+                String teamName = null, contractType = null, ntcDetails = "", nmcDetails = "";
+                int years = 0;
+                double salary = 0;
+                boolean hasNTC = false, hasNMC = false;
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    switch (reader.readName()) {
+                        case "teamName" -> teamName = BsonFields.readString(reader);
+                        case "years" -> years = BsonFields.readInt(reader);
+                        case "salary" -> salary = BsonFields.readDouble(reader);
+                        case "contractType" -> contractType = BsonFields.readString(reader);
+                        case "hasNTC" -> hasNTC = BsonFields.readBoolean(reader);
+                        case "hasNMC" -> hasNMC = BsonFields.readBoolean(reader);
+                        case "ntcDetails" -> ntcDetails = BsonFields.readString(reader);
+                        case "nmcDetails" -> nmcDetails = BsonFields.readString(reader);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.readEndDocument();
+                if (teamName != null) {
+                    offers.add(new Offer(teamName, years, salary, contractType, hasNTC, hasNMC,
+                            ntcDetails != null ? ntcDetails : "", nmcDetails != null ? nmcDetails : ""));
+                }
+            }
+            reader.readEndArray();
+            return offers;
+        }
+
+        @Override
+        public void encode(BsonWriter writer, ContractOfferRecord value, EncoderContext encoderContext) {
+            writer.writeStartDocument();
+            if (value.id() != null) writer.writeObjectId("_id", value.id());
+            BsonFields.writeString(writer, "userId", value.userId());
+            writer.writeStartArray("offers");
+            for (Offer offer : value.offers()) {
+                writer.writeStartDocument();
+                writer.writeString("teamName", offer.teamName());
+                writer.writeInt32("years", offer.years());
+                writer.writeDouble("salary", offer.salary());
+                BsonFields.writeString(writer, "contractType", offer.contractType());
+                writer.writeBoolean("hasNTC", offer.hasNTC());
+                writer.writeBoolean("hasNMC", offer.hasNMC());
+                BsonFields.writeString(writer, "ntcDetails", offer.ntcDetails());
+                BsonFields.writeString(writer, "nmcDetails", offer.nmcDetails());
+                writer.writeEndDocument();
+            }
+            writer.writeEndArray();
+            BsonFields.writeDate(writer, "createdAt", value.createdAt());
+            BsonFields.writeDate(writer, "expiresAt", value.expiresAt());
+            BsonFields.writeString(writer, "status", value.status());
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public Class<ContractOfferRecord> getEncoderClass() {
+            return ContractOfferRecord.class;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ca.lwi.trqcbot.repositories;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+
+import java.util.function.Consumer;
+
+/**
+ * Lectures typées de la collection contract_offers.
+ */
+public class ContractOfferRepository {
+
+    private final MongoCollection<ContractOfferRecord> offers;
+
+    public ContractOfferRepository(MongoDatabase database) {
+        this.offers = database.getCollection("contract_offers", ContractOfferRecord.class).withCodecRegistry(RepositoryCodecs.REGISTRY);
+    }
+
+    /**
+     * @return Les offres en attente de l'utilisateur, ou null s'il n'en a pas
+     */
+    public ContractOfferRecord findPending(String userId) {
+        return offers.find(Filters.and(Filters.eq("userId", userId), Filters.eq("status", "pending"))).first();
+    }
+
+    /**
+     * Parcourt toutes les offres en attente, sans le détail des offres.
+     * @param consumer Appelé pour chaque document d'offres
+     */
+    public void forEachPending(Consumer<ContractOfferRecord> consumer) {
+        for (ContractOfferRecord offer : offers.find(Filters.eq("status", "pending")).projection(Projections.include("userId", "expiresAt", "status"))) {
+            consumer.accept(offer);
+        }
+    }
+}
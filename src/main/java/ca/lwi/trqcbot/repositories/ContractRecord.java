@@ -0,0 +1,75 @@
+package ca.lwi.trqcbot.repositories;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Date;
+
+/**
+ * Sous-document "contract" d'un utilisateur.
+ * @param salary Salaire annuel en dollars
+ */
+public record ContractRecord(String teamName, int salary, int years, Date startDate, Date expiryDate, String type,
+                             String status, boolean hasNTC, boolean hasNMC, String ntcDetails, String nmcDetails) {
+
+    public boolean isActive() {
+        return "active".equals(status);
+    }
+
+    static final class ContractCodec implements Codec<ContractRecord> {
+
+        @Override
+        public ContractRecord decode(BsonReader reader, DecoderContext decoderContext) {
+            String teamName = null, type = null, status = null, ntcDetails = "", nmcDetails = "";
+            int salary = 0, years = 0;
+            Date startDate = null, expiryDate = null;
+            boolean hasNTC = false, hasNMC = false;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "teamName" -> teamName = BsonFields.readString(reader);
+                    case "salary" -> salary = BsonFields.readInt(reader);
+                    case "years" -> years = BsonFields.readInt(reader);
+                    case "startDate" -> startDate = BsonFields.readDate(reader);
+                    case "expiryDate" -> expiryDate = BsonFields.readDate(reader);
+                    case "type" -> type = BsonFields.readString(reader);
+                    case "status" -> status = BsonFields.readString(reader);
+                    case "hasNTC" -> hasNTC = BsonFields.readBoolean(reader);
+                    case "hasNMC" -> hasNMC = BsonFields.readBoolean(reader);
+                    case "ntcDetails" -> ntcDetails = BsonFields.readString(reader);
+                    case "nmcDetails" -> nmcDetails = BsonFields.readString(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            return new ContractRecord(teamName, salary, years, startDate, expiryDate, type, status, hasNTC, hasNMC, ntcDetails, nmcDetails);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, ContractRecord value, EncoderContext encoderContext) {
+            writer.writeStartDocument();
+            BsonFields.writeString(writer, "teamName", value.teamName());
+            writer.writeInt32("salary", value.salary());
+            writer.writeInt32("years", value.years());
+            BsonFields.writeDate(writer, "startDate", value.startDate());
+            BsonFields.writeDate(writer, "expiryDate", value.expiryDate());
+            BsonFields.writeString(writer, "type", value.type());
+            BsonFields.writeString(writer, "status", value.status());
+            writer.writeBoolean("hasNTC", value.hasNTC());
+            writer.writeBoolean("hasNMC", value.hasNMC());
+            BsonFields.writeString(writer, "ntcDetails", value.ntcDetails());
+            BsonFields.writeString(writer, "nmcDetails", value.nmcDetails());
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public Class<ContractRecord> getEncoderClass() {
+            return ContractRecord.class;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ca.lwi.trqcbot.repositories;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Registre des codecs des dépôts : décodage direct des documents BSON en records, sans passer par Document.
+ */
+public final class RepositoryCodecs {
+
+    public static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(
+                    new UserRecord.UserCodec(),
+                    new ReputationRecord.ReputationCodec(),
+                    new ContractRecord.ContractCodec(),
+                    new ContractOfferRecord.ContractOfferCodec()),
+            MongoClientSettings.getDefaultCodecRegistry());
+
+    private RepositoryCodecs() {}
+}
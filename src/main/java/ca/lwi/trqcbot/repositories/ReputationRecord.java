@@ -0,0 +1,82 @@
+package ca.lwi.trqcbot.repositories;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Sous-document "reputation" d'un utilisateur. Les compteurs absents valent 0.
+ * @param lastActive Dernière activité en millisecondes, 0 si inconnue
+ * @param joinDate Date d'arrivée en millisecondes, 0 si inconnue
+ * @param version Version des compteurs, incrémentée à chaque mise à jour d'activité (0 si jamais mis à jour)
+ */
+public record ReputationRecord(int messagesCount, int dailyMessagesCount, int avgDailyMessages, int activeDaysCount,
+                               int responsesCount, int tagsCount, int totalVoiceMinutes, int dailyVoiceMinutes,
+                               int voiceDaysActive, int reputationScore, long lastActive, long joinDate, int version) {
+
+    public static final ReputationRecord EMPTY = new ReputationRecord(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    static final class ReputationCodec implements Codec<ReputationRecord> {
+
+        @Override
+        public ReputationRecord decode(BsonReader reader, DecoderContext decoderContext) {
+            int messagesCount = 0, dailyMessagesCount = 0, avgDailyMessages = -1, activeDaysCount = 0, responsesCount = 0, tagsCount = 0;
+            int totalVoiceMinutes = 0, dailyVoiceMinutes = 0, voiceDaysActive = 0, reputationScore = 0;
+            long lastActive = 0, joinDate = 0;
+            int version = 0;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "messagesCount" -> messagesCount = BsonFields.readInt(reader);
+                    case "dailyMessagesCount" -> dailyMessagesCount = BsonFields.readInt(reader);
+                    case "avgDailyMessages" -> avgDailyMessages = BsonFields.readInt(reader);
+                    case "activeDaysCount" -> activeDaysCount = BsonFields.readInt(reader);
+                    case "responsesCount" -> responsesCount = BsonFields.readInt(reader);
+                    case "tagsCount" -> tagsCount = BsonFields.readInt(reader);
+                    case "totalVoiceMinutes" -> totalVoiceMinutes = BsonFields.readInt(reader);
+                    case "dailyVoiceMinutes" -> dailyVoiceMinutes = BsonFields.readInt(reader);
+                    case "voiceDaysActive" -> voiceDaysActive = BsonFields.readInt(reader);
+                    case "reputationScore" -> reputationScore = BsonFields.readInt(reader);
+                    case "lastActive" -> lastActive = BsonFields.readLong(reader);
+                    case "joinDate" -> joinDate = BsonFields.readLong(reader);
+                    case "version" -> version = BsonFields.readInt(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+
+            // Sans moyenne enregistrée, la moyenne est le compte du jour (même règle que calculateReputation)
+            if (avgDailyMessages < 0) avgDailyMessages = dailyMessagesCount;
+            return new ReputationRecord(messagesCount, dailyMessagesCount, avgDailyMessages, activeDaysCount, responsesCount, tagsCount,
+                    totalVoiceMinutes, dailyVoiceMinutes, voiceDaysActive, reputationScore, lastActive, joinDate, version);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, ReputationRecord value, EncoderContext encoderContext) {
+            writer.writeStartDocument();
+            writer.writeInt32("messagesCount", value.messagesCount());
+            writer.writeInt32("dailyMessagesCount", value.dailyMessagesCount());
+            writer.writeInt32("avgDailyMessages", value.avgDailyMessages());
+            writer.writeInt32("activeDaysCount", value.activeDaysCount());
+            writer.writeInt32("responsesCount", value.responsesCount());
+            writer.writeInt32("tagsCount", value.tagsCount());
+            writer.writeInt32("totalVoiceMinutes", value.totalVoiceMinutes());
+            writer.writeInt32("dailyVoiceMinutes", value.dailyVoiceMinutes());
+            writer.writeInt32("voiceDaysActive", value.voiceDaysActive());
+            writer.writeInt32("reputationScore", value.reputationScore());
+            if (value.lastActive() != 0) writer.writeInt64("lastActive", value.lastActive());
+            if (value.joinDate() != 0) writer.writeInt64("joinDate", value.joinDate());
+            if (value.version() != 0) writer.writeInt32("version", value.version());
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public Class<ReputationRecord> getEncoderClass() {
+            return ReputationRecord.class;
+        }
+    }
+}
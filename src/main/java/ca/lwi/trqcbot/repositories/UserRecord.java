@@ -0,0 +1,88 @@
+package ca.lwi.trqcbot.repositories;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Document de la collection users, limité aux champs lus par le bot.
+ * @param reputation Jamais null ({@link ReputationRecord#EMPTY} si absent)
+ * @param contract Null si l'utilisateur n'a jamais eu de contrat
+ */
+public record UserRecord(ObjectId id, String userId, String username, String teamName, String currentRank, Date joinDate,
+                         int roundPick, ReputationRecord reputation, ContractRecord contract) {
+
+    public boolean isVeteran() {
+        return currentRank != null && currentRank.contains("Vétéran");
+    }
+
+    static final class UserCodec implements Codec<UserRecord> {
+
+        private final ReputationRecord.ReputationCodec reputationCodec = new ReputationRecord.ReputationCodec();
+        private final ContractRecord.ContractCodec contractCodec = new ContractRecord.ContractCodec();
+
+        @Override
+        public UserRecord decode(BsonReader reader, DecoderContext decoderContext) {
+            ObjectId id = null;
+            String userId = null, username = null, teamName = null, currentRank = null;
+            Date joinDate = null;
+            int roundPick = 0;
+            ReputationRecord reputation = ReputationRecord.EMPTY;
+            ContractRecord contract = null;
+
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                switch (reader.readName()) {
+                    case "_id" -> id = BsonFields.readObjectId(reader);
+                    case "userId" -> userId = BsonFields.readString(reader);
+                    case "username" -> username = BsonFields.readString(reader);
+                    case "teamName" -> teamName = BsonFields.readString(reader);
+                    case "currentRank" -> currentRank = BsonFields.readString(reader);
+                    case "joinDate" -> joinDate = BsonFields.readDate(reader);
+                    case "roundPick" -> roundPick = BsonFields.readInt(reader);
+                    case "reputation" -> {
+                        if (reader.getCurrentBsonType() == BsonType.DOCUMENT) reputation = reputationCodec.decode(reader, decoderContext);
+                        else reader.skipValue();
+                    }
+                    case "contract" -> {
+                        if (reader.getCurrentBsonType() == BsonType.DOCUMENT) contract = contractCodec.decode(reader, decoderContext);
+                        else reader.skipValue();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            return new UserRecord(id, userId, username, teamName, currentRank, joinDate, roundPick, reputation, contract);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, UserRecord value, EncoderContext encoderContext) {
+            writer.writeStartDocument();
+            if (value.id() != null) writer.writeObjectId("_id", value.id());
+            BsonFields.writeString(writer, "userId", value.userId());
+            BsonFields.writeString(writer, "username", value.username());
+            BsonFields.writeString(writer, "teamName", value.teamName());
+            BsonFields.writeString(writer, "currentRank", value.currentRank());
+            BsonFields.writeDate(writer, "joinDate", value.joinDate());
+            writer.writeInt32("roundPick", value.roundPick());
+            writer.writeName("reputation");
+            reputationCodec.encode(writer, value.reputation(), encoderContext);
+            if (value.contract() != null) {
+                writer.writeName("contract");
+                contractCodec.encode(writer, value.contract(), encoderContext);
+            }
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public Class<UserRecord> getEncoderClass() {
+            return UserRecord.class;
+        }
+    }
+}
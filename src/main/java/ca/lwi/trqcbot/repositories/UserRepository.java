@@ -0,0 +1,69 @@
+package ca.lwi.trqcbot.repositories;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lectures typées de la collection users. Les écritures passent toujours par les mises à jour ciblées des managers.
+ */
+public class UserRepository {
+
+    private static final Bson DISPLAY_PROJECTION = Projections.include("userId", "username", "teamName", "currentRank", "reputation");
+
+    private final MongoCollection<UserRecord> users;
+
+    /**
+     * @param database Base de données (avec la préférence de lecture voulue)
+     */
+    public UserRepository(MongoDatabase database) {
+        this.users = database.getCollection("users", UserRecord.class).withCodecRegistry(RepositoryCodecs.REGISTRY);
+    }
+
+    /**
+     * @return L'utilisateur, ou null s'il n'est pas enregistré
+     */
+    public UserRecord findByUserId(String userId) {
+        return users.find(Filters.eq("userId", userId)).first();
+    }
+
+    /**
+     * Récupère les champs affichés dans les classements pour plusieurs utilisateurs en une seule requête.
+     * @return Les utilisateurs trouvés, indexés par ID
+     */
+    public Map<String, UserRecord> findForDisplay(Collection<String> userIds) {
+        Map<String, UserRecord> found = new HashMap<>();
+        if (userIds.isEmpty()) return found;
+        for (UserRecord user : users.find(Filters.in("userId", userIds)).projection(DISPLAY_PROJECTION)) {
+            found.put(user.userId(), user);
+        }
+        return found;
+    }
+
+    /**
+     * @return Les membres d'une équipe
+     */
+    public List<UserRecord> findByTeam(String teamName) {
+        return users.find(Filters.eq("teamName", teamName)).into(new ArrayList<>());
+    }
+
+    /**
+     * Parcourt tous les utilisateurs avec un curseur, sans les charger tous en mémoire.
+     * @param projection Champs à lire (les autres gardent leur valeur par défaut dans le record)
+     * @param consumer Appelé pour chaque utilisateur
+     */
+    public void forEach(Bson projection, Consumer<UserRecord> consumer) {
+        for (UserRecord user : users.find().projection(projection)) {
+            consumer.accept(user);
+        }
+    }
+}
@@ -1,38 +1,81 @@
 package ca.lwi.trqcbot.reputation;
 
+import ca.lwi.trqcbot.repositories.UserRecord;
 import org.bson.Document;
 
 import java.awt.*;
+import java.util.stream.IntStream;
 
 public class ReputationManager {
 
+    private static final long MILLIS_PER_DAY = 1000L * 60 * 60 * 24;
+    // En dessous, le découpage parallèle coûte plus que le calcul lui-même
+    private static final int PARALLEL_THRESHOLD = 4096;
+
     public static int calculateReputation(Document userData) {
-        Document reputation = (Document) userData.get("reputation");
-        if (reputation == null) return 0;
+        return score(ReputationSnapshot.fromDocument(userData), System.currentTimeMillis());
+    }
+
+    /**
+     * Calcule la réputation à partir d'un utilisateur décodé, sans recherche par clé ni boxing.
+     */
+    public static int calculateReputation(UserRecord user) {
+        return score(ReputationSnapshot.fromUser(user), System.currentTimeMillis());
+    }
 
-        int messagesCount = reputation.getInteger("messagesCount", 0);
+    /**
+     * Calcule la réputation d'un instantané, sans allocation.
+     * @param now Instant de référence pour l'inactivité, en millisecondes
+     */
+    public static int score(ReputationSnapshot s, long now) {
+        if (!s.hasReputation()) return 0;
+        return calculateReputation(s.veteran(), s.messagesCount(), s.dailyMessages(), s.avgDailyMessages(), s.responses(), s.tags(),
+                s.totalVoiceMinutes(), s.dailyVoiceMinutes(), s.voiceDaysActive(), s.lastActive(), s.joinDate(), now);
+    }
+
+    /**
+     * Calcule la réputation de plusieurs instantanés en une passe, avec le même instant de référence pour tous.
+     * @param snapshots Instantanés à évaluer
+     * @param scores Reçoit le score de chaque instantané, au même indice (au moins aussi long que snapshots)
+     * @param now Instant de référence pour l'inactivité, en millisecondes
+     * @param parallel Répartit le calcul sur le pool commun pour les grands lots
+     */
+    public static void scoreAll(ReputationSnapshot[] snapshots, int[] scores, long now, boolean parallel) {
+        if (parallel && snapshots.length >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, snapshots.length).parallel().forEach(i -> scores[i] = score(snapshots[i], now));
+            return;
+        }
+        for (int i = 0; i < snapshots.length; i++) {
+            scores[i] = score(snapshots[i], now);
+        }
+    }
+
+    /**
+     * @param lastActive Dernière activité en millisecondes, 0 si inconnue
+     * @param joinDate Date d'arrivée en millisecondes, 0 si inconnue
+     */
+    private static int calculateReputation(boolean isVeteran, int messagesCount, int dailyMessages, int avgDailyMessages,
+                                           int responses, int tags, int totalVoiceMinutes, int dailyVoiceMinutes,
+                                           int voiceDaysActive, long lastActive, long joinDate, long now) {
         int reputationScore = 0;
 
         // Bonus de vétéran
-        boolean isVeteran = userData.getString("currentRank").contains("Vétéran");
         if (isVeteran) reputationScore += 15;
 
         // Pénalité d'inactivité
-        reputationScore = getInactiveScore(reputation, reputationScore);
+        reputationScore = getInactiveScore(lastActive, joinDate, now, reputationScore);
 
         // Bonus d'interactions
-        int reputationActionBonus = calculateReputationActionBonus(reputation);
+        int reputationActionBonus = calculateReputationActionBonus(responses, tags);
         reputationScore += reputationActionBonus;
 
         // Bonus de messages quotidiens
-        int dailyMessages = reputation.getInteger("dailyMessagesCount", 0);
-        int avgDailyMessages = reputation.getInteger("avgDailyMessages", dailyMessages);
         int messageWeightedAvg = calculateWeightedAverage(dailyMessages, avgDailyMessages);
 
         reputationScore = applyDailyActivityFactor(reputationScore, messageWeightedAvg, messagesCount);
 
         // Bonus d'activité vocale
-        int voiceActivityBonus = calculateVoiceActivityBonus(reputation);
+        int voiceActivityBonus = calculateVoiceActivityBonus(totalVoiceMinutes, dailyVoiceMinutes, voiceDaysActive);
         reputationScore += voiceActivityBonus;
 
         // Facteur basé sur le nombre total de messages - progression graduelle
@@ -74,10 +117,8 @@ public class ReputationManager {
         return reputationScore;
     }
 
-    private static int calculateReputationActionBonus(Document reputation) {
+    private static int calculateReputationActionBonus(int responses, int tags) {
         int bonus = 0;
-        int responses = reputation.getInteger("responsesCount", 0);
-        int tags = reputation.getInteger("tagsCount", 0);
 
         // Points pour les réponses, avec plafonnement progressif
         if (responses <= 10) {
@@ -100,11 +141,7 @@ public class ReputationManager {
         return bonus;
     }
 
-    private static int calculateVoiceActivityBonus(Document reputation) {
-        int totalVoiceMinutes = reputation.getInteger("totalVoiceMinutes", 0);
-        int dailyVoiceMinutes = reputation.getInteger("dailyVoiceMinutes", 0);
-        int voiceDaysActive = reputation.getInteger("voiceDaysActive", 0);
-
+    private static int calculateVoiceActivityBonus(int totalVoiceMinutes, int dailyVoiceMinutes, int voiceDaysActive) {
         int voiceBonus = 0;
 
         // Bonus pour l'activité quotidienne avec une courbe de rendement décroissant
@@ -140,24 +177,15 @@ public class ReputationManager {
         return Math.min(20, voiceBonus);
     }
 
-    private static int getInactiveScore(Document reputation, int reputationScore) {
-        // Vérifier si reputation est null
-        if (reputation == null) {
-            return reputationScore;
-        }
-
-        // Récupérer lastActive, avec une valeur par défaut si c'est null
-        Long lastActiveObj = reputation.get("lastActive", Long.class);
-        Long joinDateObj = reputation.get("joinDate", Long.class);
-
-        // Si les deux sont null, on ne peut pas calculer l'inactivité
-        if (lastActiveObj == null && joinDateObj == null) {
+    private static int getInactiveScore(long lastActive, long joinDate, long now, int reputationScore) {
+        // Si les deux sont inconnus, on ne peut pas calculer l'inactivité
+        if (lastActive == 0 && joinDate == 0) {
             return reputationScore;
         }
 
         // Utiliser lastActive s'il existe, sinon utiliser joinDate
-        long lastActiveTimestamp = lastActiveObj != null ? lastActiveObj : joinDateObj;
-        long daysInactive = (System.currentTimeMillis() - lastActiveTimestamp) / (1000 * 60 * 60 * 24);
+        long lastActiveTimestamp = lastActive != 0 ? lastActive : joinDate;
+        long daysInactive = (now - lastActiveTimestamp) / MILLIS_PER_DAY;
 
         if (daysInactive > 30) {
             reputationScore -= 20; // Très longue inactivité
@@ -0,0 +1,48 @@
+package ca.lwi.trqcbot.reputation;
+
+import ca.lwi.trqcbot.repositories.ReputationRecord;
+import ca.lwi.trqcbot.repositories.UserRecord;
+import org.bson.Document;
+
+/**
+ * Valeurs utilisées par le calcul de réputation, en types primitifs.
+ * Construit une seule fois par utilisateur, puis évalué sans allocation par {@link ReputationManager#score(ReputationSnapshot, long)}.
+ * @param hasReputation Faux si l'utilisateur n'a pas encore de sous-document reputation (score 0)
+ * @param lastActive Dernière activité en millisecondes, 0 si inconnue
+ * @param joinDate Date d'arrivée en millisecondes, 0 si inconnue
+ */
+public record ReputationSnapshot(boolean hasReputation, boolean veteran, int messagesCount, int dailyMessages,
+                                 int avgDailyMessages, int responses, int tags, int totalVoiceMinutes,
+                                 int dailyVoiceMinutes, int voiceDaysActive, long lastActive, long joinDate) {
+
+    private static final ReputationSnapshot NONE = new ReputationSnapshot(false, false, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    public static ReputationSnapshot fromUser(UserRecord user) {
+        ReputationRecord reputation = user.reputation();
+        if (reputation == ReputationRecord.EMPTY) return NONE;
+        return new ReputationSnapshot(true, user.isVeteran(), reputation.messagesCount(), reputation.dailyMessagesCount(),
+                reputation.avgDailyMessages(), reputation.responsesCount(), reputation.tagsCount(),
+                reputation.totalVoiceMinutes(), reputation.dailyVoiceMinutes(), reputation.voiceDaysActive(),
+                reputation.lastActive(), reputation.joinDate());
+    }
+
+    public static ReputationSnapshot fromDocument(Document userData) {
+        Document reputation = (Document) userData.get("reputation");
+        if (reputation == null) return NONE;
+        int dailyMessages = reputation.getInteger("dailyMessagesCount", 0);
+        Long lastActive = reputation.get("lastActive", Long.class);
+        Long joinDate = reputation.get("joinDate", Long.class);
+        String currentRank = userData.getString("currentRank");
+        return new ReputationSnapshot(true, currentRank != null && currentRank.contains("Vétéran"),
+                reputation.getInteger("messagesCount", 0),
+                dailyMessages,
+                reputation.getInteger("avgDailyMessages", dailyMessages),
+                reputation.getInteger("responsesCount", 0),
+                reputation.getInteger("tagsCount", 0),
+                reputation.getInteger("totalVoiceMinutes", 0),
+                reputation.getInteger("dailyVoiceMinutes", 0),
+                reputation.getInteger("voiceDaysActive", 0),
+                lastActive != null ? lastActive : 0,
+                joinDate != null ? joinDate : 0);
+    }
+}
@@ -1,16 +1,66 @@
 package ca.lwi.trqcbot.reputation;
 
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.GuildVoiceState;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Suivi des sessions vocales. Les événements JDA et les vérifications planifiées accèdent aux sessions
+ * depuis des threads différents : l'état est dans des ConcurrentHashMap et chaque transition est une
+ * opération atomique sur la clé de l'utilisateur dans sessions (les minutes passées dans voiceTimeAccumulated
+ * le sont pendant cette opération, pour que la sauvegarde voie toujours les deux ensemble).
+ * Les sessions ouvertes et les minutes non encore créditées sont sauvegardées périodiquement dans
+ * la collection voice_sessions pour être reprises après un redémarrage.
+ * Chaque segment terminé est aussi ajouté à l'historique par canal et par heure ({@link VoiceHistoryBuffer}).
+ */
 public class VoiceActivityTracker {
-    private final Map<String, Long> voiceJoinTimestamps = new HashMap<>();
-    private final Map<String, Integer> voiceTimeAccumulated = new HashMap<>();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VoiceActivityTracker.class);
+    private static final long MINUTE_MS = 1000L * 60;
+
+    // Début du segment en cours (non encore converti en minutes) par utilisateur
+    private final Map<String, VoiceSession> sessions = new ConcurrentHashMap<>();
+    // Minutes des segments terminés, pas encore créditées à l'utilisateur
+    private final Map<String, Integer> voiceTimeAccumulated = new ConcurrentHashMap<>();
+    private final MongoCollection<Document> sessionCollection;
+    private final VoiceHistoryBuffer history;
+    // Tant que les sauvegardes n'ont pas été reprises, une sauvegarde les écraserait par un état vide
+    private volatile boolean resumed;
+
+    /**
+     * @param sessionCollection Collection de sauvegarde des sessions (voice_sessions)
+     * @param history Historique par canal et par heure
+     */
+    public VoiceActivityTracker(MongoCollection<Document> sessionCollection, VoiceHistoryBuffer history) {
+        this.sessionCollection = sessionCollection;
+        this.history = history;
+    }
+
+    /**
+     * Segment vocal en cours.
+     * @param segmentStart Début du segment, en millisecondes
+     * @param channelId Canal vocal du segment
+     */
+    private record VoiceSession(long segmentStart, String channelId) {}
 
     // Méthode principale pour suivre l'activité vocale
     public void trackVoiceActivity(Member member, AudioChannel oldChannel, AudioChannel newChannel) {
@@ -25,20 +75,24 @@ public class VoiceActivityTracker {
 
         // Cas 2: L'utilisateur rejoint un canal vocal
         if (oldChannel == null && newChannel != null) {
-            if (canTrackUser(member)) voiceJoinTimestamps.put(userId, System.currentTimeMillis());
+            if (canTrackUser(member)) sessions.putIfAbsent(userId, new VoiceSession(System.currentTimeMillis(), newChannel.getId()));
             return;
         }
 
         // Cas 3: L'utilisateur change d'état (muet/non-muet) ou de canal
-        boolean wasTracking = voiceJoinTimestamps.containsKey(userId);
+        boolean wasTracking = sessions.containsKey(userId);
         boolean shouldTrackNow = canTrackUser(member);
 
         if (!wasTracking && shouldTrackNow) {
             // L'utilisateur vient de se démuter, commencer à suivre
-            voiceJoinTimestamps.put(userId, System.currentTimeMillis());
+            AudioChannel channel = newChannel != null ? newChannel : member.getVoiceState().getChannel();
+            sessions.putIfAbsent(userId, new VoiceSession(System.currentTimeMillis(), channel != null ? channel.getId() : null));
         } else if (wasTracking && !shouldTrackNow) {
             // L'utilisateur vient de se mettre en sourdine, arrêter le suivi
             processVoiceLeave(userId);
+        } else if (wasTracking && oldChannel != null && newChannel != null && !oldChannel.getId().equals(newChannel.getId())) {
+            // Changement de canal : clore le segment dans l'ancien canal sans arrêter le suivi
+            switchChannel(userId, newChannel.getId());
         }
     }
 
@@ -50,24 +104,60 @@ public class VoiceActivityTracker {
 
     // Traiter la sortie d'un canal vocal ou la mise en sourdine
     private int processVoiceLeave(String userId) {
-        Long joinTime = voiceJoinTimestamps.remove(userId);
-        if (joinTime == null) return 0;
-
-        long timeSpentMs = System.currentTimeMillis() - joinTime;
-        int minutes = Math.max(1, (int) (timeSpentMs / (1000 * 60))); // Au moins 1 minute pour éviter les 0
+        long now = System.currentTimeMillis();
+        int[] minutes = new int[1];
+        sessions.computeIfPresent(userId, (id, session) -> {
+            history.record(userId, session.channelId(), session.segmentStart(), now);
+            long timeSpentMs = now - session.segmentStart();
+            minutes[0] = Math.max(1, (int) (timeSpentMs / MINUTE_MS)); // Au moins 1 minute pour éviter les 0
 
-        // Accumuler le temps
-        int currentAccumulated = voiceTimeAccumulated.getOrDefault(userId, 0);
-        voiceTimeAccumulated.put(userId, currentAccumulated + minutes);
+            // Accumuler le temps
+            voiceTimeAccumulated.merge(userId, minutes[0], Integer::sum);
+            return null;
+        });
+        return minutes[0];
+    }
 
-        return minutes;
+    // Clore les minutes complètes du segment dans l'ancien canal et continuer dans le nouveau
+    private void switchChannel(String userId, String channelId) {
+        long now = System.currentTimeMillis();
+        int[] segmentMinutes = new int[1];
+        sessions.computeIfPresent(userId, (id, session) -> {
+            segmentMinutes[0] = (int) ((now - session.segmentStart()) / MINUTE_MS);
+            long segmentEnd = session.segmentStart() + segmentMinutes[0] * MINUTE_MS;
+            history.record(userId, session.channelId(), session.segmentStart(), segmentEnd);
+            addVoiceTime(userId, segmentMinutes[0]);
+            return new VoiceSession(segmentEnd, channelId);
+        });
     }
 
     // Récupérer et réinitialiser le temps accumulé
     public int getAndResetVoiceTime(String userId) {
-        int time = voiceTimeAccumulated.getOrDefault(userId, 0);
-        voiceTimeAccumulated.put(userId, 0);
-        return time;
+        Integer time = voiceTimeAccumulated.remove(userId);
+        return time != null ? time : 0;
+    }
+
+    /**
+     * Récupère le temps accumulé et les minutes complètes du segment en cours, sans fermer la session.
+     * Le début du segment avance du nombre de minutes comptées : les secondes restantes ne sont pas perdues.
+     * @param userId ID de l'utilisateur
+     * @return Minutes à créditer
+     */
+    public int drainVoiceTime(String userId) {
+        long now = System.currentTimeMillis();
+        int[] segmentMinutes = new int[1];
+        sessions.computeIfPresent(userId, (id, session) -> {
+            segmentMinutes[0] = (int) ((now - session.segmentStart()) / MINUTE_MS);
+            long segmentEnd = session.segmentStart() + segmentMinutes[0] * MINUTE_MS;
+            history.record(userId, session.channelId(), session.segmentStart(), segmentEnd);
+            return new VoiceSession(segmentEnd, session.channelId());
+        });
+        return getAndResetVoiceTime(userId) + segmentMinutes[0];
+    }
+
+    // Remettre du temps non crédité (ex: écriture échouée)
+    public void addVoiceTime(String userId, int minutes) {
+        if (minutes > 0) voiceTimeAccumulated.merge(userId, minutes, Integer::sum);
     }
 
     // Obtenir le temps accumulé sans réinitialiser
@@ -77,6 +167,120 @@ public class VoiceActivityTracker {
 
     // Obtenir la liste des utilisateurs actuellement suivis
     public Set<String> getActiveUsers() {
-        return new HashSet<>(voiceJoinTimestamps.keySet());
+        return new HashSet<>(sessions.keySet());
+    }
+
+    /**
+     * Sauvegarde les sessions ouvertes et les minutes non créditées en un seul bulkWrite,
+     * et supprime les sauvegardes des sessions terminées depuis. Sans effet avant {@link #resume(Guild)}.
+     * L'historique en attente est écrit en même temps.
+     */
+    public void checkpoint() {
+        history.flush();
+        if (!resumed) return;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Set<String> userIds = new HashSet<>(sessions.keySet());
+            userIds.addAll(voiceTimeAccumulated.keySet());
+
+            List<WriteModel<Document>> writes = new ArrayList<>(userIds.size() + 1);
+            ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+            for (String userId : userIds) {
+                Document checkpoint = snapshot(userId, now);
+                if (checkpoint != null) writes.add(new ReplaceOneModel<>(Filters.eq("_id", userId), checkpoint, upsert));
+            }
+            writes.add(new DeleteManyModel<>(Filters.nin("_id", userIds)));
+
+            try {
+                sessionCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            } catch (Exception e) {
+                LOGGER.error("Erreur lors de la sauvegarde des sessions vocales ({} utilisateurs): {}", userIds.size(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Sauvegarde immédiatement l'état d'un seul utilisateur, ou supprime sa sauvegarde s'il n'a plus
+     * ni session ni minutes en attente (ex: minutes créditées à sa sortie du vocal, qui seraient sinon
+     * créditées une seconde fois par la reprise après un arrêt avant la prochaine sauvegarde).
+     * @param userId ID de l'utilisateur
+     */
+    public void checkpoint(String userId) {
+        if (!resumed) return;
+        synchronized (this) {
+            Document checkpoint = snapshot(userId, System.currentTimeMillis());
+            try {
+                if (checkpoint != null) {
+                    sessionCollection.replaceOne(Filters.eq("_id", userId), checkpoint, new ReplaceOptions().upsert(true));
+                } else {
+                    sessionCollection.deleteOne(Filters.eq("_id", userId));
+                }
+            } catch (Exception e) {
+                LOGGER.error("Erreur lors de la sauvegarde de la session vocale de {}: {}", userId, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Lit la session et les minutes en attente d'un utilisateur en une seule opération sur sa clé.
+     * @return Le document de sauvegarde, ou null s'il n'y a rien à sauvegarder
+     */
+    private Document snapshot(String userId, long now) {
+        Document[] checkpoint = new Document[1];
+        sessions.compute(userId, (id, session) -> {
+            int pendingMinutes = voiceTimeAccumulated.getOrDefault(userId, 0);
+            if (session == null && pendingMinutes == 0) return null;
+            checkpoint[0] = new Document("_id", userId)
+                    .append("pendingMinutes", pendingMinutes)
+                    .append("checkpointAt", now);
+            if (session != null) {
+                checkpoint[0].append("segmentStart", session.segmentStart()).append("channelId", session.channelId());
+            }
+            return session;
+        });
+        return checkpoint[0];
+    }
+
+    /**
+     * Reprend les sessions après un redémarrage. Le temps sauvegardé jusqu'au dernier point de sauvegarde est
+     * remis dans les minutes à créditer ; le temps pendant lequel le bot était hors ligne n'est pas compté.
+     * Les membres actuellement en vocal (cache d'états vocaux de JDA) commencent un nouveau segment.
+     * @param guild Serveur dont on reprend les sessions
+     * @return Minutes récupérées par utilisateur qui n'est plus en vocal, à créditer immédiatement
+     */
+    public Map<String, Integer> resume(Guild guild) {
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (Document checkpoint : sessionCollection.find()) {
+            String userId = checkpoint.getString("_id");
+            int minutes = checkpoint.getInteger("pendingMinutes", 0);
+            Long segmentStart = checkpoint.getLong("segmentStart");
+            Long checkpointAt = checkpoint.getLong("checkpointAt");
+            if (segmentStart != null && checkpointAt != null && checkpointAt > segmentStart) {
+                minutes += (int) ((checkpointAt - segmentStart) / MINUTE_MS);
+            }
+            if (minutes > 0) {
+                voiceTimeAccumulated.merge(userId, minutes, Integer::sum);
+                restored++;
+            }
+        }
+
+        for (GuildVoiceState voiceState : guild.getVoiceStates()) {
+            Member member = voiceState.getMember();
+            if (member.getUser().isBot() || !canTrackUser(member)) continue;
+            AudioChannel channel = voiceState.getChannel();
+            sessions.putIfAbsent(member.getId(), new VoiceSession(now, channel != null ? channel.getId() : null));
+        }
+
+        Map<String, Integer> toCredit = new HashMap<>();
+        for (String userId : new ArrayList<>(voiceTimeAccumulated.keySet())) {
+            if (sessions.containsKey(userId)) continue;
+            int minutes = getAndResetVoiceTime(userId);
+            if (minutes > 0) toCredit.put(userId, minutes);
+        }
+        resumed = true;
+        LOGGER.info("Sessions vocales reprises: {} sauvegardes, {} membres en vocal", restored, sessions.size());
+        checkpoint();
+        return toCredit;
     }
-}
\ No newline at end of file
+}
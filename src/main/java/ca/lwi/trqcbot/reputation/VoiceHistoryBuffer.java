@@ -0,0 +1,146 @@
+package ca.lwi.trqcbot.reputation;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historique du temps vocal, regroupé en un document par utilisateur et par jour (UTC) dans la collection voice_activity :
+ * { userId, day, total, channels: { channelId: minutes }, hours: { "0".."23": minutes } }.
+ * Les minutes sont agrégées en mémoire puis écrites par lots de $inc avec upsert,
+ * sans toucher aux documents de la collection users.
+ */
+public class VoiceHistoryBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VoiceHistoryBuffer.class);
+    private static final long MINUTE_MS = 1000L * 60;
+    private static final long HOUR_MS = MINUTE_MS * 60;
+    private static final long DAY_MS = HOUR_MS * 24;
+    private static final String UNKNOWN_CHANNEL = "unknown";
+
+    private final MongoCollection<Document> historyCollection;
+    private final Map<BucketKey, Bucket> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param historyCollection Collection voice_activity
+     */
+    public VoiceHistoryBuffer(MongoCollection<Document> historyCollection) {
+        this.historyCollection = historyCollection;
+    }
+
+    /**
+     * Enregistre un segment vocal, réparti par heure. Une minute est comptée pour chaque changement de minute
+     * pendant le segment : des segments consécutifs ne comptent jamais deux fois la même minute.
+     * @param userId ID de l'utilisateur
+     * @param channelId Canal vocal, ou null s'il est inconnu
+     * @param start Début du segment, en millisecondes
+     * @param end Fin du segment (exclue), en millisecondes
+     */
+    public void record(String userId, String channelId, long start, long end) {
+        String channel = channelId != null ? channelId : UNKNOWN_CHANNEL;
+        long sliceStart = start;
+        while (sliceStart < end) {
+            long sliceEnd = Math.min(end, (sliceStart / HOUR_MS + 1) * HOUR_MS);
+            int minutes = (int) (sliceEnd / MINUTE_MS - sliceStart / MINUTE_MS);
+            if (minutes > 0) {
+                long day = sliceStart - (sliceStart % DAY_MS);
+                int hour = (int) ((sliceStart % DAY_MS) / HOUR_MS);
+                pending.compute(new BucketKey(userId, day), (key, bucket) -> {
+                    if (bucket == null) bucket = new Bucket();
+                    bucket.add(channel, hour, minutes);
+                    return bucket;
+                });
+            }
+            sliceStart = sliceEnd;
+        }
+    }
+
+    /**
+     * Écrit les minutes en attente en un bulkWrite non ordonné. Les minutes des écritures en échec sont remises en file.
+     */
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        Map<BucketKey, Bucket> drained = new HashMap<>();
+        for (BucketKey key : new ArrayList<>(pending.keySet())) {
+            Bucket bucket = pending.remove(key);
+            if (bucket != null) drained.put(key, bucket);
+        }
+        if (drained.isEmpty()) return;
+
+        // Même ordre que les écritures : l'index d'une erreur du bulkWrite désigne le document
+        List<BucketKey> keys = new ArrayList<>(drained.keySet());
+        List<WriteModel<Document>> writes = new ArrayList<>(keys.size());
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        for (BucketKey key : keys) {
+            writes.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("userId", key.userId()), Filters.eq("day", new Date(key.day()))),
+                    drained.get(key).toUpdate(), upsert));
+        }
+        try {
+            historyCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Les autres écritures ont été appliquées : seules les minutes en erreur sont remises en file
+            for (BulkWriteError error : e.getWriteErrors()) {
+                BucketKey key = keys.get(error.getIndex());
+                pending.merge(key, drained.get(key), Bucket::merge);
+            }
+            LOGGER.error("Erreur lors de l'écriture de l'historique vocal ({}/{} documents): {}",
+                    e.getWriteErrors().size(), keys.size(), e.getMessage(), e);
+        } catch (Exception e) {
+            drained.forEach((key, bucket) -> pending.merge(key, bucket, Bucket::merge));
+            LOGGER.error("Erreur lors de l'écriture de l'historique vocal ({} documents): {}", drained.size(), e.getMessage(), e);
+        }
+    }
+
+    private record BucketKey(String userId, long day) {}
+
+    // Minutes d'un utilisateur pour une journée, par canal et par heure
+    private static final class Bucket {
+        private int total;
+        private final Map<String, Integer> channels = new HashMap<>(4);
+        private final int[] hours = new int[24];
+
+        private void add(String channelId, int hour, int minutes) {
+            total += minutes;
+            channels.merge(channelId, minutes, Integer::sum);
+            hours[hour] += minutes;
+        }
+
+        private Bson toUpdate() {
+            List<Bson> increments = new ArrayList<>(channels.size() + 4);
+            increments.add(Updates.inc("total", total));
+            channels.forEach((channelId, minutes) -> increments.add(Updates.inc("channels." + channelId, minutes)));
+            for (int hour = 0; hour < hours.length; hour++) {
+                if (hours[hour] > 0) increments.add(Updates.inc("hours." + hour, hours[hour]));
+            }
+            return Updates.combine(increments);
+        }
+
+        private static Bucket merge(Bucket current, Bucket failed) {
+            current.total += failed.total;
+            failed.channels.forEach((channelId, minutes) -> current.channels.merge(channelId, minutes, Integer::sum));
+            for (int hour = 0; hour < current.hours.length; hour++) {
+                current.hours[hour] += failed.hours[hour];
+            }
+            return current;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourcesManager {
 
@@ -54,7 +55,7 @@ public class ResourcesManager {
     private final String MODAL_ADD_WITH_SELECTOR = "resources_add_with_selector";
 
     // Cache section choice for each user
-    private final Map<String, String> userSectionChoices = new HashMap<>();
+    private final Map<String, String> userSectionChoices = new ConcurrentHashMap<>();
 
     public void registerEventListeners(net.dv8tion.jda.api.JDA jda) {
         if (!this.listenersRegistered) {
@@ -1,35 +1,205 @@
 package ca.lwi.trqcbot.teams;
 
 import ca.lwi.trqcbot.Main;
+import ca.lwi.trqcbot.repositories.UserRecord;
+import ca.lwi.trqcbot.repositories.UserRepository;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.github.cdimascio.dotenv.Dotenv;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class TeamManager {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TeamManager.class);
+    private static final long WATCH_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
     private final MongoDatabase database;
     private final MongoCollection<Document> teamsCollection;
+    private final UserRepository displayUserRepository;
+    private final long teamScoresTtlMillis;
+    private volatile Map<String, TeamScore> cachedTeamScores;
+    private volatile long teamScoresLoadedAt;
+    private volatile TeamSnapshot snapshot = new TeamSnapshot(0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList());
+    private final Thread watcherThread;
 
     public TeamManager() {
         this.database = Main.getMongoConnection().getDatabase();
         this.teamsCollection = this.database.getCollection("teams");
+        this.displayUserRepository = new UserRepository(Main.getMongoConnection().getReadOnlyDatabase());
+        this.teamScoresTtlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(Dotenv.load().get("TEAM_SCORES_CACHE_SECONDS", "30")));
+        refresh();
+        this.watcherThread = new Thread(this::watchTeams, "teams-watcher");
+        this.watcherThread.setDaemon(true);
+    }
+
+    /**
+     * Démarre le suivi des modifications de la collection teams. À appeler une fois, après la construction.
+     */
+    public void start() {
+        watcherThread.start();
     }
 
+    /**
+     * Les documents retournés sont partagés par le cache et ne doivent pas être modifiés.
+     * @param name Nom de l'équipe
+     * @return L'équipe, ou null si elle n'existe pas
+     */
     public Document getTeamByName(String name) {
-        return teamsCollection.find(Filters.eq("name", name)).first();
+        if (name == null) return null;
+        return snapshot.byName().get(name);
+    }
+
+    /**
+     * @param id ID de l'équipe
+     * @return L'équipe, ou null si elle n'existe pas
+     */
+    public Document getTeamById(ObjectId id) {
+        if (id == null) return null;
+        return snapshot.byId().get(id);
     }
 
+    /**
+     * @return Toutes les équipes (liste non modifiable partagée par le cache)
+     */
     public List<Document> getAllTeams() {
-        MongoCollection<Document> collection = this.database.getCollection("teams");
-        return collection.find().into(new ArrayList<>());
+        return snapshot.teams();
+    }
+
+    /**
+     * @return Le numéro de version du cache des équipes, incrémenté à chaque rechargement
+     */
+    public long getTeamsVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Recharge toutes les équipes depuis MongoDB et remplace le cache de manière atomique.
+     * À appeler après toute modification de la collection teams faite en dehors du bot.
+     */
+    public synchronized void refresh() {
+        List<Document> teams = teamsCollection.find().into(new ArrayList<>());
+        Map<String, Document> byName = new HashMap<>();
+        Map<ObjectId, Document> byId = new HashMap<>();
+        for (Document team : teams) {
+            String name = team.getString("name");
+            if (name != null) byName.put(name, team);
+            ObjectId id = team.getObjectId("_id");
+            if (id != null) byId.put(id, team);
+        }
+        snapshot = new TeamSnapshot(snapshot.version() + 1, Collections.unmodifiableMap(byName), Collections.unmodifiableMap(byId), Collections.unmodifiableList(teams));
+        LOGGER.info("Cache des équipes chargé: {} équipes (version {})", teams.size(), snapshot.version());
+    }
+
+    /**
+     * Suit les modifications de la collection teams avec un change stream et recharge le cache.
+     * Si les change streams ne sont pas disponibles, le cache est rechargé périodiquement ;
+     * le passage au rechargement périodique n'est signalé qu'une fois, jusqu'à ce qu'un change stream s'ouvre de nouveau.
+     */
+    private void watchTeams() {
+        boolean polling = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            try (MongoCursor<ChangeStreamDocument<Document>> cursor = teamsCollection.watch().iterator()) {
+                polling = false;
+                while (cursor.hasNext()) {
+                    cursor.next();
+                    refresh();
+                }
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) return;
+                if (!polling) {
+                    LOGGER.warn("Suivi des équipes indisponible, rechargement toutes les minutes: {}", e.getMessage());
+                    polling = true;
+                } else {
+                    LOGGER.debug("Suivi des équipes toujours indisponible: {}", e.getMessage());
+                }
+                try {
+                    Thread.sleep(WATCH_RETRY_DELAY_MS);
+                    refresh();
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (Exception ex) {
+                    LOGGER.error("Erreur lors du rechargement des équipes: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        watcherThread.interrupt();
+    }
+
+    public List<UserRecord> getAllUsersFromTeam(String teamName) {
+        return displayUserRepository.findByTeam(teamName);
     }
 
-    public List<Document> getAllUsersFromTeam(String teamName) {
-        MongoCollection<Document> collection = this.database.getCollection("users");
-        return collection.find(Filters.eq("teamName", teamName)).into(new ArrayList<>());
+    /**
+     * Calcule la réputation cumulée de chaque équipe en une seule agrégation côté serveur.
+     * Le résultat est conservé en cache pendant TEAM_SCORES_CACHE_SECONDS.
+     * @return Les scores par nom d'équipe (les équipes sans membre sont absentes)
+     */
+    public Map<String, TeamScore> getTeamScores() {
+        Map<String, TeamScore> scores = cachedTeamScores;
+        if (scores != null && System.currentTimeMillis() - teamScoresLoadedAt < teamScoresTtlMillis) return scores;
+
+        scores = Collections.unmodifiableMap(aggregateTeamScores(Main.getMongoConnection().getReadOnlyDatabase().getCollection("users")));
+        cachedTeamScores = scores;
+        teamScoresLoadedAt = System.currentTimeMillis();
+        return scores;
+    }
+
+    /**
+     * Agrégation $match/$group des scores par équipe, sans cache.
+     * @param userCollection Collection des utilisateurs
+     * @return Les scores par nom d'équipe (les équipes sans membre sont absentes)
+     */
+    public static Map<String, TeamScore> aggregateTeamScores(MongoCollection<Document> userCollection) {
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.and(Filters.ne("teamName", null), Filters.exists("reputation"))),
+                Aggregates.group("$teamName",
+                        Accumulators.sum("totalScore", "$reputation.reputationScore"),
+                        Accumulators.sum("memberCount", 1))
+        );
+        Map<String, TeamScore> loaded = new HashMap<>();
+        for (Document result : userCollection.aggregate(pipeline)) {
+            String teamName = result.getString("_id");
+            Number totalScore = result.get("totalScore", Number.class);
+            Number memberCount = result.get("memberCount", Number.class);
+            loaded.put(teamName, new TeamScore(teamName, totalScore != null ? totalScore.longValue() : 0, memberCount != null ? memberCount.intValue() : 0));
+        }
+        return loaded;
     }
+
+    /**
+     * Réputation cumulée d'une équipe.
+     * @param teamName Nom de l'équipe
+     * @param totalScore Somme des scores de réputation des membres
+     * @param memberCount Nombre de membres
+     */
+    public record TeamScore(String teamName, long totalScore, int memberCount) {}
+
+    /**
+     * Copie immuable des équipes, indexée par nom et par ID.
+     * @param version Version du cache
+     * @param byName Équipes par nom
+     * @param byId Équipes par ID
+     * @param teams Toutes les équipes
+     */
+    public record TeamSnapshot(long version, Map<String, Document> byName, Map<ObjectId, Document> byId, List<Document> teams) {}
 }
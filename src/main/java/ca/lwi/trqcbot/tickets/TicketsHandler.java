@@ -28,6 +28,7 @@ import java.awt.*;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class TicketsHandler extends ListenerAdapter {
 
@@ -184,10 +185,7 @@ public class TicketsHandler extends ListenerAdapter {
                     thread.sendMessageEmbeds(embed).queue();
 
                     // Mettre à jour dans MongoDB
-                    ticketsCollection.updateOne(
-                            Filters.eq("threadId", thread.getId()),
-                            Updates.set("archived", false)
-                    );
+                    setArchived(thread.getId(), false);
 
                     event.reply("Le ticket a été désarchivé avec succès.").setEphemeral(true).queue();
                     LOGGER.info("Ticket désarchivé: {}", thread.getName());
@@ -212,10 +210,10 @@ public class TicketsHandler extends ListenerAdapter {
             return;
         }
 
-        event.deferReply(true).queue(hook -> {
+        // Déterminer le numéro du ticket en comptant les documents existants + 1, pendant l'accusé de réception
+        CompletableFuture<Long> ticketNumber = Main.getMongoConnection().getAsync().supply(() -> ticketsCollection.countDocuments() + 1);
+        event.deferReply(true).submit().thenCombine(ticketNumber, (hook, ticketCount) -> {
             try {
-                // Déterminer le numéro du ticket en comptant les documents existants + 1
-                long ticketCount = ticketsCollection.countDocuments() + 1;
                 String threadName = "ticket-" + event.getUser().getName().toLowerCase() + "-" + ticketCount;
                 LOGGER.info("Création du ticket numéro {}: {}", ticketCount, threadName);
 
@@ -273,8 +271,10 @@ public class TicketsHandler extends ListenerAdapter {
                                             .append("createdAt", Instant.now().toString())
                                             .append("archived", false);
 
-                                    ticketsCollection.insertOne(ticketDoc);
-                                    LOGGER.info("Ticket #{} enregistré dans MongoDB", ticketCount);
+                                    Main.getMongoConnection().getAsync().run(() -> ticketsCollection.insertOne(ticketDoc)).whenComplete((v, error) -> {
+                                        if (error == null) LOGGER.info("Ticket #{} enregistré dans MongoDB", ticketCount);
+                                        else LOGGER.error("Erreur lors de l'enregistrement du ticket #{}: {}", ticketCount, error.getMessage());
+                                    });
                                 },
                                 error -> {
                                     LOGGER.error("Erreur création thread: {}", error.getMessage());
@@ -285,6 +285,11 @@ public class TicketsHandler extends ListenerAdapter {
                 LOGGER.error("Exception lors de la création du ticket: {}", e.getMessage(), e);
                 hook.sendMessage("Une erreur inattendue s'est produite.").queue();
             }
+            return hook;
+        }).exceptionally(error -> {
+            LOGGER.error("Exception lors de la création du ticket: {}", error.getMessage(), error);
+            event.getHook().sendMessage("Une erreur inattendue s'est produite.").queue();
+            return null;
         });
     }
 
@@ -313,10 +318,7 @@ public class TicketsHandler extends ListenerAdapter {
             threadChannel.getManager().setArchived(true).queue(
                     success -> {
                         // Mettre à jour le statut dans MongoDB
-                        ticketsCollection.updateOne(
-                                Filters.eq("threadId", threadChannel.getId()),
-                                Updates.set("archived", true)
-                        );
+                        setArchived(threadChannel.getId(), true);
 
                         event.reply("Le ticket a été archivé.").setEphemeral(true).queue();
                         LOGGER.info("Ticket archivé: {}", threadChannel.getName());
@@ -329,6 +331,21 @@ public class TicketsHandler extends ListenerAdapter {
         });
     }
 
+    /**
+     * Met à jour le statut d'archivage d'un ticket dans MongoDB, hors des threads de JDA
+     *
+     * @param threadId ID du thread du ticket
+     * @param archived Nouveau statut
+     */
+    private void setArchived(String threadId, boolean archived) {
+        Main.getMongoConnection().getAsync()
+                .run(() -> ticketsCollection.updateOne(Filters.eq("threadId", threadId), Updates.set("archived", archived)))
+                .exceptionally(error -> {
+                    LOGGER.error("Erreur lors de la mise à jour du ticket {}: {}", threadId, error.getMessage());
+                    return null;
+                });
+    }
+
     /**
      * Gère la commande '/ticket archive'
      *
@@ -354,10 +371,7 @@ public class TicketsHandler extends ListenerAdapter {
         threadChannel.sendMessageEmbeds(embed).queue(message -> {
             threadChannel.getManager().setArchived(true).queue(
                     success -> {
-                        ticketsCollection.updateOne(
-                                Filters.eq("threadId", threadChannel.getId()),
-                                Updates.set("archived", true)
-                        );
+                        setArchived(threadChannel.getId(), true);
                         LOGGER.info("Ticket archivé par commande: {}", threadChannel.getName());
                     },
                     error -> LOGGER.error("Erreur lors de l'archivage du ticket {}: {}", threadChannel.getName(), error.getMessage())
@@ -0,0 +1,301 @@
+package ca.lwi.trqcbot.utils;
+
+import ca.lwi.trqcbot.metrics.LatencyHistogram;
+import ca.lwi.trqcbot.metrics.Metrics;
+import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache à deux niveaux des images distantes (logos, signatures) :
+ * un LRU en mémoire des images décodées et un cache disque des PNG déjà transcodés.
+ * Les entrées plus vieilles que le délai de revalidation sont servies telles quelles
+ * et revalidées en arrière-plan par une requête conditionnelle (ETag / Last-Modified).
+ * Les images retournées sont partagées et ne doivent pas être modifiées.
+ */
+public class ImageCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageCache.class);
+    private static final String USER_AGENT = "bot emily-bot";
+    private static final int TIMEOUT_MS = 10_000;
+
+    private final int maxEntries;
+    private final long revalidateAfterMillis;
+    private final Path directory;
+    private final Map<String, CachedImage> memory;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final ExecutorService revalidator;
+
+    private final LongAdder memoryHits = Metrics.counter("images.cache.memory_hit");
+    private final LongAdder diskHits = Metrics.counter("images.cache.disk_hit");
+    private final LongAdder misses = Metrics.counter("images.cache.miss");
+    private final LongAdder notModified = Metrics.counter("images.cache.not_modified");
+    private final LongAdder refreshed = Metrics.counter("images.cache.refreshed");
+    private final LatencyHistogram loadLatency = Metrics.histogram("images.cache.load");
+
+    /**
+     * Convertit les octets téléchargés en image à la taille demandée.
+     */
+    @FunctionalInterface
+    public interface Decoder {
+        BufferedImage decode(String url, byte[] data, int width, int height) throws Exception;
+    }
+
+    /**
+     * @param maxEntries Nombre maximal d'images gardées en mémoire
+     * @param revalidateAfterMillis Âge à partir duquel une image est revalidée auprès du serveur
+     * @param directory Dossier du cache disque, ou null pour le désactiver
+     */
+    public ImageCache(int maxEntries, long revalidateAfterMillis, Path directory) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.revalidateAfterMillis = revalidateAfterMillis;
+        this.directory = directory;
+        this.memory = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedImage> eldest) {
+                return size() > ImageCache.this.maxEntries;
+            }
+        };
+        this.revalidator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "image-cache-revalidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                LOGGER.warn("Impossible de créer le cache d'images {}: {}", directory, e.getMessage());
+            }
+        }
+        Metrics.gauge("images.cache.entries", () -> {
+            synchronized (memory) {
+                return memory.size();
+            }
+        });
+    }
+
+    /**
+     * Crée le cache à partir de la configuration (.env) :
+     * IMAGE_CACHE_ENTRIES, IMAGE_CACHE_REVALIDATE_HOURS et IMAGE_CACHE_DIR (vide pour désactiver le disque).
+     */
+    public static ImageCache fromEnv(Dotenv dotenv) {
+        int maxEntries = Integer.parseInt(dotenv.get("IMAGE_CACHE_ENTRIES", "256"));
+        long revalidateAfter = TimeUnit.HOURS.toMillis(Long.parseLong(dotenv.get("IMAGE_CACHE_REVALIDATE_HOURS", "24")));
+        String dir = dotenv.get("IMAGE_CACHE_DIR", "cache/images");
+        return new ImageCache(maxEntries, revalidateAfter, dir == null || dir.isBlank() ? null : Paths.get(dir));
+    }
+
+    /**
+     * @param url URL de l'image
+     * @param width Largeur demandée (0 si l'image n'est pas redimensionnée)
+     * @param height Hauteur demandée (0 si l'image n'est pas redimensionnée)
+     * @param decoder Conversion des octets téléchargés en image
+     * @return L'image, depuis la mémoire, le disque ou le réseau
+     */
+    public BufferedImage get(String url, int width, int height, Decoder decoder) throws IOException {
+        String key = url + "@" + width + "x" + height;
+
+        CachedImage cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            memoryHits.increment();
+            revalidateIfStale(key, url, width, height, decoder, cached);
+            return cached.image();
+        }
+
+        long start = System.nanoTime();
+        try {
+            cached = readFromDisk(key, url);
+            if (cached != null) {
+                diskHits.increment();
+                remember(key, cached);
+                revalidateIfStale(key, url, width, height, decoder, cached);
+                return cached.image();
+            }
+
+            misses.increment();
+            Download download = download(url, null);
+            cached = store(key, url, width, height, decoder, download);
+            return cached.image();
+        } finally {
+            loadLatency.recordSince(start);
+        }
+    }
+
+    private void revalidateIfStale(String key, String url, int width, int height, Decoder decoder, CachedImage cached) {
+        if (System.currentTimeMillis() - cached.fetchedAt() < revalidateAfterMillis) return;
+        if (!revalidating.add(key)) return;
+        revalidator.execute(() -> {
+            try {
+                Download download = download(url, cached);
+                if (download == null) {
+                    notModified.increment();
+                    CachedImage touched = new CachedImage(cached.image(), cached.etag(), cached.lastModified(), System.currentTimeMillis());
+                    remember(key, touched);
+                    writeMetadata(key, url, touched);
+                } else {
+                    refreshed.increment();
+                    store(key, url, width, height, decoder, download);
+                }
+            } catch (Exception e) {
+                // Garder l'image actuelle et réessayer au prochain délai
+                LOGGER.warn("Revalidation impossible pour {}: {}", url, e.getMessage());
+                remember(key, new CachedImage(cached.image(), cached.etag(), cached.lastModified(), System.currentTimeMillis()));
+            } finally {
+                revalidating.remove(key);
+            }
+        });
+    }
+
+    private CachedImage store(String key, String url, int width, int height, Decoder decoder, Download download) throws IOException {
+        BufferedImage image;
+        try {
+            image = decoder.decode(url, download.data(), width, height);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Erreur lors du décodage de l'image: " + e.getMessage(), e);
+        }
+        if (image == null) throw new IOException("Impossible de charger l'image: " + url);
+
+        CachedImage cached = new CachedImage(image, download.etag(), download.lastModified(), System.currentTimeMillis());
+        remember(key, cached);
+        writeToDisk(key, url, cached);
+        return cached;
+    }
+
+    private void remember(String key, CachedImage cached) {
+        synchronized (memory) {
+            memory.put(key, cached);
+        }
+    }
+
+    /**
+     * Télécharge l'image. Avec une entrée en cache, la requête est conditionnelle.
+     * @return Le contenu téléchargé, ou null si le serveur répond 304 (non modifié)
+     */
+    private Download download(String url, CachedImage cached) throws IOException {
+        URLConnection connection;
+        try {
+            connection = new URI(url).toURL().openConnection();
+        } catch (Exception e) {
+            throw new IOException("URL invalide: " + url, e);
+        }
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        if (cached != null) {
+            if (cached.etag() != null) connection.setRequestProperty("If-None-Match", cached.etag());
+            if (cached.lastModified() != null) connection.setRequestProperty("If-Modified-Since", cached.lastModified());
+        }
+        if (connection instanceof HttpURLConnection http) {
+            int status = http.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                http.disconnect();
+                return null;
+            }
+            if (status >= 400) {
+                http.disconnect();
+                throw new IOException("Réponse HTTP " + status + " pour " + url);
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new Download(in.readAllBytes(), connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        }
+    }
+
+    private CachedImage readFromDisk(String key, String url) {
+        if (directory == null) return null;
+        Path png = directory.resolve(fileName(key) + ".png");
+        Path meta = directory.resolve(fileName(key) + ".properties");
+        if (!Files.isRegularFile(png) || !Files.isRegularFile(meta)) return null;
+        try {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(meta)) {
+                properties.load(in);
+            }
+            // Collision de hash improbable, mais ne jamais servir l'image d'une autre URL
+            if (!url.equals(properties.getProperty("url"))) return null;
+            BufferedImage image = ImageIO.read(png.toFile());
+            if (image == null) return null;
+            long fetchedAt = Long.parseLong(properties.getProperty("fetchedAt", "0"));
+            return new CachedImage(image, properties.getProperty("etag"), properties.getProperty("lastModified"), fetchedAt);
+        } catch (Exception e) {
+            LOGGER.warn("Entrée du cache d'images illisible pour {}: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String url, CachedImage cached) {
+        if (directory == null) return;
+        try {
+            Path png = directory.resolve(fileName(key) + ".png");
+            Path tmp = Files.createTempFile(directory, "img", ".tmp");
+            ImageIO.write(cached.image(), "png", tmp.toFile());
+            Files.move(tmp, png, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeMetadata(key, url, cached);
+        } catch (Exception e) {
+            LOGGER.warn("Impossible d'écrire {} dans le cache d'images: {}", url, e.getMessage());
+        }
+    }
+
+    private void writeMetadata(String key, String url, CachedImage cached) {
+        if (directory == null) return;
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("fetchedAt", Long.toString(cached.fetchedAt()));
+        if (cached.etag() != null) properties.setProperty("etag", cached.etag());
+        if (cached.lastModified() != null) properties.setProperty("lastModified", cached.lastModified());
+        try {
+            Path tmp = Files.createTempFile(directory, "meta", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, null);
+            }
+            Files.move(tmp, directory.resolve(fileName(key) + ".properties"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Impossible d'écrire les métadonnées de {}: {}", url, e.getMessage());
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record CachedImage(BufferedImage image, String etag, String lastModified, long fetchedAt) {}
+
+    private record Download(byte[] data, String etag, String lastModified) {}
+}
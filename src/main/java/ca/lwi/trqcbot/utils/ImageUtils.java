@@ -1,6 +1,7 @@
 package ca.lwi.trqcbot.utils;
 
 import ca.lwi.trqcbot.commands.list.ComTeam;
+import io.github.cdimascio.dotenv.Dotenv;
 import net.dv8tion.jda.api.entities.User;
 import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
 import org.apache.batik.transcoder.TranscoderInput;
@@ -24,41 +25,16 @@ import java.util.Objects;
 
 public class ImageUtils {
 
+    // Logos et signatures : cache mémoire + disque, voir ImageCache
+    private static final ImageCache CACHE = ImageCache.fromEnv(Dotenv.configure().ignoreIfMissing().load());
+
     public static BufferedImage loadSVG(String svgUrl, int maxDimension) throws IOException {
         return loadSVG(svgUrl, maxDimension, maxDimension);
     }
 
     public static BufferedImage loadSVG(String svgUrl, int height, int width) throws IOException {
         try {
-            // Parser le document SVG
-            String parser = XMLResourceDescriptor.getXMLParserClassName();
-            SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(parser);
-
-            // URL Connection avec User-Agent
-            URLConnection connection = new URI(svgUrl).toURL().openConnection();
-            connection.setRequestProperty("User-Agent", "bot emily-bot");
-
-            // Charger le document SVG
-            SVGDocument svgDocument = factory.createSVGDocument(svgUrl, connection.getInputStream());
-
-            // Transcodage en image PNG
-            PNGTranscoder transcoder = new PNGTranscoder();
-            transcoder.addTranscodingHint(ImageTranscoder.KEY_WIDTH, (float) width);
-            transcoder.addTranscodingHint(ImageTranscoder.KEY_HEIGHT, (float) height);
-
-            // Input SVG
-            TranscoderInput input = new TranscoderInput(svgDocument);
-
-            // Output vers ByteArrayOutputStream
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            TranscoderOutput output = new TranscoderOutput(outputStream);
-
-            // Transcoder de SVG vers PNG
-            transcoder.transcode(input, output);
-
-            // Convertir le résultat en BufferedImage
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-            return ImageIO.read(inputStream);
+            return CACHE.get(svgUrl, width, height, ImageUtils::transcodeSVG);
         } catch (Exception e) {
             System.out.println("Erreur lors du chargement du SVG: " + svgUrl + " - " + e.getMessage());
             throw new IOException("Erreur lors du chargement du SVG: " + e.getMessage(), e);
@@ -76,39 +52,55 @@ public class ImageUtils {
         }
 
         // Pour les autres formats d'image (PNG, JPG, etc.)
-        BufferedImage image;
         if (imagePath.startsWith("http://") || imagePath.startsWith("https://")) {
-            URI uri = new URI(imagePath);
-            URLConnection connection = uri.toURL().openConnection();
-            connection.setRequestProperty("User-Agent", "bot emily-bot");
-
-            image = ImageIO.read(connection.getInputStream());
-
-            // Convertir en ARGB si nécessaire
-            if (image != null && image.getType() != BufferedImage.TYPE_INT_ARGB) {
-                BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = argbImage.createGraphics();
-                g.drawImage(image, 0, 0, null);
-                g.dispose();
-                image = argbImage;
-            }
-        } else {
-            image = ImageIO.read(new File(imagePath));
-
-            // Convertir en ARGB si nécessaire
-            if (image != null && image.getType() != BufferedImage.TYPE_INT_ARGB) {
-                BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-                Graphics2D g = argbImage.createGraphics();
-                g.drawImage(image, 0, 0, null);
-                g.dispose();
-                image = argbImage;
-            }
+            // L'image n'est pas redimensionnée : une seule entrée de cache, quelle que soit la taille demandée
+            return CACHE.get(imagePath, 0, 0, (url, data, width, height) -> toArgb(ImageIO.read(new ByteArrayInputStream(data))));
         }
 
+        BufferedImage image = toArgb(ImageIO.read(new File(imagePath)));
         if (image == null) throw new IOException("Impossible de charger l'image: " + imagePath);
         return image;
     }
 
+    private static BufferedImage transcodeSVG(String svgUrl, byte[] data, int width, int height) throws Exception {
+        // Parser le document SVG
+        String parser = XMLResourceDescriptor.getXMLParserClassName();
+        SAXSVGDocumentFactory factory = new SAXSVGDocumentFactory(parser);
+        SVGDocument svgDocument = factory.createSVGDocument(svgUrl, new ByteArrayInputStream(data));
+
+        // Transcodage en image PNG
+        PNGTranscoder transcoder = new PNGTranscoder();
+        transcoder.addTranscodingHint(ImageTranscoder.KEY_WIDTH, (float) width);
+        transcoder.addTranscodingHint(ImageTranscoder.KEY_HEIGHT, (float) height);
+
+        // Transcoder de SVG vers PNG
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transcoder.transcode(new TranscoderInput(svgDocument), new TranscoderOutput(outputStream));
+
+        // Convertir le résultat en BufferedImage
+        return ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    // Convertir en ARGB si nécessaire
+    private static BufferedImage toArgb(BufferedImage image) {
+        if (image == null || image.getType() == BufferedImage.TYPE_INT_ARGB) return image;
+        BufferedImage argbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = argbImage.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return argbImage;
+    }
+
+    /**
+     * @param image Image à encoder
+     * @return L'image encodée en PNG
+     */
+    public static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
     public static BufferedImage getUserAvatar(User user) throws IOException, URISyntaxException {
         URLConnection connection = new URI(user.getAvatarUrl() != null ? user.getAvatarUrl() : user.getDefaultAvatarUrl()).toURL().openConnection();
         connection.setRequestProperty("User-Agent", "bot emily-bot");